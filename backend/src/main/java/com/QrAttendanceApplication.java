@@ -3,11 +3,13 @@ package com;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.util.TimeZone;
 
 @SpringBootApplication
 @ConfigurationPropertiesScan("com.config")
+@EnableScheduling
 public class QrAttendanceApplication {
     public static void main(String[] args) {
         // Render thường chạy UTC. Set timezone VN để giờ điểm danh & tính phút đúng.
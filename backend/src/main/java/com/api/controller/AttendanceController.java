@@ -1,30 +1,72 @@
-
 package com.api.controller;
 
 import com.api.dto.AttendanceDtos;
+import com.exception.ApiException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.service.AttendanceService;
+import com.service.CheckInAdmissionControl;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.Map;
+import org.springframework.web.multipart.MultipartFile;
 
 /**
  * API điểm danh (sinh viên): check-in bằng QR.
+ * Check-in đi qua admission control (giới hạn đồng thời, 429 khi quá tải).
  */
 @RestController
 @RequestMapping("/api/attendance")
 public class AttendanceController {
 
   private final AttendanceService attendanceService;
+  private final CheckInAdmissionControl admission;
 
-  public AttendanceController(AttendanceService attendanceService) {
+  /** Writer dựng sẵn cho CheckInResponse: không phải tra serializer / negotiate mỗi request. */
+  private final ObjectWriter checkInWriter;
+
+  public AttendanceController(AttendanceService attendanceService,
+                              CheckInAdmissionControl admission,
+                              ObjectMapper objectMapper) {
     this.attendanceService = attendanceService;
+    this.admission = admission;
+    this.checkInWriter = objectMapper.writerFor(AttendanceDtos.CheckInResponse.class);
+  }
+
+  @PostMapping(value = "/check-in", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+  @PreAuthorize("hasRole('STUDENT')")
+  public ResponseEntity<byte[]> checkIn(@Valid @RequestBody AttendanceDtos.CheckInRequest req) {
+    AttendanceDtos.CheckInResponse resp =
+        admission.execute(req.payload().sessionId(), () -> attendanceService.checkIn(req));
+    return json(resp);
   }
 
-  @PostMapping("/check-in")
+  /**
+   * Check-in + ảnh selfie trong 1 request:
+   * - part "payload": JSON {payload:{sessionId,qrToken}, gpsLat, gpsLng}
+   * - part "file": ảnh selfie
+   */
+  @PostMapping(value = "/check-in", consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+      produces = MediaType.APPLICATION_JSON_VALUE)
   @PreAuthorize("hasRole('STUDENT')")
-  public Map<String, Object> checkIn(@Valid @RequestBody AttendanceDtos.CheckInRequest req) {
-    return attendanceService.checkIn(req);
+  public ResponseEntity<byte[]> checkInWithPhoto(@Valid @RequestPart("payload") AttendanceDtos.CheckInForm form,
+                                                 @RequestPart("file") MultipartFile file) {
+    AttendanceDtos.CheckInResponse resp =
+        admission.execute(form.payload().sessionId(), () -> attendanceService.checkInWithPhoto(form, file));
+    return json(resp);
+  }
+
+  private ResponseEntity<byte[]> json(AttendanceDtos.CheckInResponse resp) {
+    try {
+      return ResponseEntity.ok()
+          .contentType(MediaType.APPLICATION_JSON)
+          .body(checkInWriter.writeValueAsBytes(resp));
+    } catch (JsonProcessingException e) {
+      throw new ApiException(HttpStatus.INTERNAL_SERVER_ERROR, "Cannot serialize check-in response");
+    }
   }
 }
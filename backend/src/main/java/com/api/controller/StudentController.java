@@ -1,10 +1,15 @@
 package com.api.controller;
 
 import com.api.dto.StudentDtos;
+import com.service.ResourceVersions;
 import com.service.StudentService;
+import com.util.ConditionalGet;
+import com.util.SecurityUtil;
 import jakarta.validation.Valid;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Map;
@@ -22,15 +27,19 @@ import java.util.Map;
 public class StudentController {
 
   private final StudentService studentService;
+  private final ResourceVersions versions;
 
-  public StudentController(StudentService studentService) {
+  public StudentController(StudentService studentService, ResourceVersions versions) {
     this.studentService = studentService;
+    this.versions = versions;
   }
 
   /** Danh sách lớp mà sinh viên đã tham gia. */
   @GetMapping("/classes")
-  public List<Map<String, Object>> myClasses() {
-    return studentService.getMyClasses();
+  public ResponseEntity<List<Map<String, Object>>> myClasses(WebRequest request) {
+    Long studentId = SecurityUtil.currentUser() == null ? null : SecurityUtil.currentUser().getId();
+    String etag = versions.etag(ResourceVersions.Scope.STUDENT_CLASSES, studentId);
+    return ConditionalGet.respond(request, etag, studentService::getMyClasses);
   }
 
   /** Tham gia lớp bằng mã lớp (classCode). */
@@ -3,15 +3,29 @@ package com.api.controller;
 import com.api.dto.TeacherDtos;
 import com.domain.entity.ClassEntity;
 import com.domain.entity.SessionEntity;
+import com.service.AttendanceRowExportService;
+import com.service.ClassAttendanceXlsxWriter;
+import com.service.ExportJobService;
+import com.service.ResourceVersions;
 import com.service.TeacherService;
+import com.util.ConditionalGet;
+import com.util.FileDownload;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -28,9 +42,21 @@ import java.util.Map;
 public class TeacherController {
 
   private final TeacherService teacherService;
+  private final ResourceVersions versions;
+  private final ClassAttendanceXlsxWriter xlsxWriter;
+  private final ExportJobService exportJobs;
+  private final AttendanceRowExportService rowExports;
 
-  public TeacherController(TeacherService teacherService) {
+  public TeacherController(TeacherService teacherService,
+                           ResourceVersions versions,
+                           ClassAttendanceXlsxWriter xlsxWriter,
+                           ExportJobService exportJobs,
+                           AttendanceRowExportService rowExports) {
     this.teacherService = teacherService;
+    this.versions = versions;
+    this.xlsxWriter = xlsxWriter;
+    this.exportJobs = exportJobs;
+    this.rowExports = rowExports;
   }
 
   // =====================
@@ -60,8 +86,10 @@ public class TeacherController {
   }
 
   @GetMapping("/classes/{id}/members")
-  public List<Map<String, Object>> members(@PathVariable Long id) {
-    return teacherService.getClassMembers(id);
+  public ResponseEntity<List<Map<String, Object>>> members(@PathVariable Long id, WebRequest request) {
+    teacherService.checkOwnedClass(id);
+    String etag = versions.etag(ResourceVersions.Scope.CLASS_MEMBERS, id);
+    return ConditionalGet.respond(request, etag, () -> teacherService.getClassMembers(id));
   }
 
   @DeleteMapping("/classes/{classId}/members/{memberId}")
@@ -80,8 +108,10 @@ public class TeacherController {
   }
 
   @GetMapping("/classes/{id}/sessions")
-  public List<SessionEntity> getSessions(@PathVariable Long id) {
-    return teacherService.getSessions(id);
+  public ResponseEntity<List<SessionEntity>> getSessions(@PathVariable Long id, WebRequest request) {
+    teacherService.checkOwnedClass(id);
+    String etag = versions.etag(ResourceVersions.Scope.CLASS_SESSIONS, id);
+    return ConditionalGet.respond(request, etag, () -> teacherService.getSessions(id));
   }
 
   /** Xóa 1 buổi học (session) + xóa toàn bộ attendance trong buổi đó. */
@@ -96,6 +126,12 @@ public class TeacherController {
     return teacherService.openSession(sessionId, req);
   }
 
+  /** Mã QR hiện tại của buổi học đang mở (QR xoay vòng: gọi lại mỗi vài giây). */
+  @GetMapping("/sessions/{sessionId}/qr")
+  public Map<String, Object> currentQr(@PathVariable Long sessionId) {
+    return teacherService.getCurrentQr(sessionId);
+  }
+
   @PutMapping("/sessions/{sessionId}/close")
   public SessionEntity closeSession(@PathVariable Long sessionId) {
     return teacherService.closeSession(sessionId);
@@ -109,8 +145,37 @@ public class TeacherController {
   }
 
   @GetMapping("/sessions/{sessionId}/attendance")
-  public List<Map<String, Object>> attendance(@PathVariable Long sessionId) {
-    return teacherService.getSessionAttendance(sessionId);
+  public ResponseEntity<List<Map<String, Object>>> attendance(@PathVariable Long sessionId, WebRequest request) {
+    teacherService.requireOwnedSession(sessionId);
+    String etag = versions.etag(ResourceVersions.Scope.SESSION_ATTENDANCE, sessionId);
+    return ConditionalGet.respond(request, etag, () -> teacherService.getSessionAttendance(sessionId));
+  }
+
+  /**
+   * Delta điểm danh theo cursor: chỉ trả các bản ghi mới sau cursor + nextCursor.
+   * cursor rỗng = từ đầu. Polling gửi lại nextCursor của lần trước.
+   */
+  @GetMapping(value = "/sessions/{sessionId}/attendance", params = "cursor")
+  public Map<String, Object> attendanceSince(@PathVariable Long sessionId,
+                                             @RequestParam String cursor,
+                                             @RequestParam(defaultValue = "200") int limit) {
+    return teacherService.getSessionAttendanceSince(sessionId, cursor, limit);
+  }
+
+  /** Số liệu nhanh: sĩ số / đúng giờ / muộn / chưa điểm danh. */
+  @GetMapping("/sessions/{sessionId}/counts")
+  public Map<String, Object> counts(@PathVariable Long sessionId) {
+    return teacherService.getSessionCounts(sessionId);
+  }
+
+  /**
+   * Live feed điểm danh (Server-Sent Events).
+   * - "ready": đã kết nối (client tải danh sách 1 lần)
+   * - "attendance": 1 check-in mới {id, sessionId, studentId, checkInTime, photoUrl, status}
+   */
+  @GetMapping(value = "/sessions/{sessionId}/attendance/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter attendanceStream(@PathVariable Long sessionId) {
+    return teacherService.subscribeSessionAttendance(sessionId);
   }
 
 
@@ -127,18 +192,79 @@ public class TeacherController {
 
     return new ResponseEntity<>(bytes, headers, HttpStatus.OK);
   }
-  /** Export báo cáo chuyên cần TỔNG HỢP theo LỚP ra Excel (.xlsx). */
+  /**
+   * Export báo cáo chuyên cần TỔNG HỢP theo LỚP ra Excel (.xlsx).
+   * Kiểm tra quyền + nạp dữ liệu trong request (lỗi vẫn trả JSON), sau đó ghi streaming thẳng ra response.
+   */
   @GetMapping(value = "/classes/{classId}/attendance/export",
       produces = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
-  public ResponseEntity<byte[]> exportClassAttendance(@PathVariable Long classId) {
-    byte[] bytes = teacherService.exportClassAttendanceSummaryXlsx(classId);
+  public ResponseEntity<StreamingResponseBody> exportClassAttendance(@PathVariable Long classId) {
+    ClassAttendanceXlsxWriter.ClassSheet data = teacherService.prepareClassAttendanceExport(classId);
 
     HttpHeaders headers = new HttpHeaders();
     headers.setContentType(MediaType.parseMediaType(
         "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"));
     headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=attendance-class-" + classId + ".xlsx");
 
-    return new ResponseEntity<>(bytes, headers, HttpStatus.OK);
+    return new ResponseEntity<>(out -> xlsxWriter.write(data, out), headers, HttpStatus.OK);
+  }
+
+
+  // =====================
+  // RAW EXPORT (CSV / NDJSON)
+  // =====================
+  /** Bản ghi điểm danh thô của buổi học (?format=csv|ndjson, mặc định csv). */
+  @GetMapping("/sessions/{sessionId}/attendance/rows")
+  public ResponseEntity<StreamingResponseBody> exportSessionRows(@PathVariable Long sessionId,
+                                                                 @RequestParam(required = false) String format) {
+    return rowExport(rowExports.exportSession(sessionId, AttendanceRowExportService.Format.parse(format)));
+  }
+
+  @GetMapping("/classes/{classId}/attendance/rows")
+  public ResponseEntity<StreamingResponseBody> exportClassRows(@PathVariable Long classId,
+                                                               @RequestParam(required = false) String format) {
+    return rowExport(rowExports.exportClass(classId, AttendanceRowExportService.Format.parse(format)));
+  }
+
+  /** Tất cả lớp của giảng viên, lọc theo ngày buổi học (from/to dạng yyyy-MM-dd, tuỳ chọn). */
+  @GetMapping("/attendance/rows")
+  public ResponseEntity<StreamingResponseBody> exportTeacherRows(
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+      @RequestParam(required = false) String format) {
+    return rowExport(rowExports.exportTeacher(from, to, AttendanceRowExportService.Format.parse(format)));
+  }
+
+  private static ResponseEntity<StreamingResponseBody> rowExport(AttendanceRowExportService.RowExport export) {
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(export.contentType()))
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + export.filename())
+        .body(export.body());
+  }
+
+
+  /**
+   * Export chạy nền: tạo job (hoặc trả job/file đã có nếu dữ liệu lớp chưa đổi).
+   * Trả 202 + {jobId, status, progress, ...}; client poll GET /export-jobs/{jobId}.
+   */
+  @PostMapping("/classes/{classId}/attendance/export-jobs")
+  @ResponseStatus(HttpStatus.ACCEPTED)
+  public Map<String, Object> submitClassExport(@PathVariable Long classId) {
+    return exportJobs.submitClassExport(classId);
+  }
+
+  @GetMapping("/export-jobs/{jobId}")
+  public Map<String, Object> getExportJob(@PathVariable String jobId) {
+    return exportJobs.getJob(jobId);
+  }
+
+  /** Tải file của job đã xong (sendfile của Tomcat nếu hỗ trợ). */
+  @GetMapping("/export-jobs/{jobId}/file")
+  public void downloadExport(@PathVariable String jobId,
+                             HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+    ExportJobService.Download d = exportJobs.getDownload(jobId);
+    FileDownload.send(request, response, d.file(), d.filename(), d.contentType());
   }
 
 
@@ -146,7 +272,9 @@ public class TeacherController {
   // REPORT
   // =====================
   @GetMapping("/classes/{id}/report")
-  public Map<String, Object> report(@PathVariable Long id) {
-    return teacherService.getClassReport(id);
+  public ResponseEntity<Map<String, Object>> report(@PathVariable Long id, WebRequest request) {
+    teacherService.checkOwnedClass(id);
+    String etag = versions.etag(ResourceVersions.Scope.CLASS_REPORT, id);
+    return ConditionalGet.respond(request, etag, () -> teacherService.getClassReport(id));
   }
 }
\ No newline at end of file
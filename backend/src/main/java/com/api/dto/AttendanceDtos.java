@@ -1,9 +1,12 @@
 package com.api.dto;
 
+import com.domain.enums.AttendanceStatus;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.NotBlank;
 
+import java.time.LocalDateTime;
+
 public class AttendanceDtos {
 
   public record QrPayload(
@@ -17,4 +20,32 @@ public class AttendanceDtos {
       @NotNull Double gpsLng,
       @NotBlank String photoUrl
   ) {}
+
+  /** Phần JSON "payload" của check-in multipart (ảnh gửi kèm ở part "file"). */
+  public record CheckInForm(
+      @Valid @NotNull QrPayload payload,
+      @NotNull Double gpsLat,
+      @NotNull Double gpsLng
+  ) {}
+
+  /**
+   * Response check-in gọn (thay cho Map.of + nguyên entity Attendance).
+   * distanceMeters = null khi giảng viên không gửi GPS; maxDistanceMeters = null khi vùng điểm danh là đa giác.
+   */
+  public record CheckInResponse(
+      String message,
+      CheckInAttendance attendance,
+      Long distanceMeters,
+      Long maxDistanceMeters
+  ) {}
+
+  /** id = null khi bản ghi đang chờ ghi (write-behind). */
+  public record CheckInAttendance(
+      Long id,
+      Long sessionId,
+      Long studentId,
+      LocalDateTime checkInTime,
+      String photoUrl,
+      AttendanceStatus status
+  ) {}
 }
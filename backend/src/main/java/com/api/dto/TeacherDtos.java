@@ -1,22 +1,54 @@
 package com.api.dto;
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 public class TeacherDtos {
   public record CreateClassRequest(@NotBlank String className) {}
   public record UpdateClassRequest(@NotBlank String className) {}
 
+  /** Báo cáo lớp: thông tin sinh viên. */
+  public record ReportStudent(Long studentId, String fullName, String email) {}
+
+  /** Báo cáo lớp: thống kê của 1 sinh viên. */
+  public record ReportStudentStats(
+      Long studentId,
+      String fullName,
+      String email,
+      int totalSessions,
+      long onTime,
+      long late,
+      long present,
+      long absent
+  ) {}
+
   public record CreateSessionRequest(
       @NotBlank String title,
       @NotNull LocalDateTime sessionDate
   ) {}
 
+  /**
+   * Mở điểm danh.
+   * - radiusMeters: bán kính riêng cho buổi học (tuỳ chọn)
+   * - polygon: vùng điểm danh dạng đa giác >= 3 đỉnh (tuỳ chọn, thay cho bán kính)
+   */
   public record OpenSessionRequest(
       @NotNull Double teacherLat,
-      @NotNull Double teacherLng
+      @NotNull Double teacherLng,
+      @Positive @Max(5000) Double radiusMeters,
+      @Valid @Size(min = 3, max = 100) List<GeoPoint> polygon
+  ) {}
+
+  public record GeoPoint(
+      @NotNull Double lat,
+      @NotNull Double lng
   ) {}
 
   /** Giảng viên điểm danh thủ công cho 1 sinh viên trong 1 buổi học. */
@@ -11,6 +11,11 @@ import org.springframework.stereotype.Component;
  * app.google.clientId=...
  * app.attendance.onTimeMinutes=...
  * app.upload.dir=...
+ * app.virtualThreads.pinningMonitor=...
+ * app.liveFeed.heartbeatSeconds=...
+ * app.export.dir=...
+ * app.migrations.enabled=...
+ * app.cache.maxSize=...
  */
 @Component
 @ConfigurationProperties(prefix = "app")
@@ -21,6 +26,11 @@ public class AppProperties {
   private Google google = new Google();
   private Attendance attendance = new Attendance();
   private Upload upload = new Upload();
+  private VirtualThreads virtualThreads = new VirtualThreads();
+  private LiveFeed liveFeed = new LiveFeed();
+  private Export export = new Export();
+  private Migrations migrations = new Migrations();
+  private Cache cache = new Cache();
 
   public Jwt getJwt() {
     return jwt;
@@ -62,6 +72,46 @@ public class AppProperties {
     this.upload = upload;
   }
 
+  public VirtualThreads getVirtualThreads() {
+    return virtualThreads;
+  }
+
+  public void setVirtualThreads(VirtualThreads virtualThreads) {
+    this.virtualThreads = virtualThreads;
+  }
+
+  public LiveFeed getLiveFeed() {
+    return liveFeed;
+  }
+
+  public void setLiveFeed(LiveFeed liveFeed) {
+    this.liveFeed = liveFeed;
+  }
+
+  public Export getExport() {
+    return export;
+  }
+
+  public void setExport(Export export) {
+    this.export = export;
+  }
+
+  public Migrations getMigrations() {
+    return migrations;
+  }
+
+  public void setMigrations(Migrations migrations) {
+    this.migrations = migrations;
+  }
+
+  public Cache getCache() {
+    return cache;
+  }
+
+  public void setCache(Cache cache) {
+    this.cache = cache;
+  }
+
   public static class Jwt {
     private String secret;
     private long expirationMs;
@@ -112,6 +162,21 @@ public class AppProperties {
     /** Số phút được coi là "đúng giờ" (<= onTimeMinutes) */
     private int onTimeMinutes;
 
+    /** Bán kính điểm danh mặc định (m) khi giảng viên không đặt riêng */
+    private double maxDistanceMeters = 50.0;
+
+    /** Ghi điểm danh kiểu write-behind (gom batch) thay vì save từng bản ghi */
+    private WriteBehind writeBehind = new WriteBehind();
+
+    /** Chế độ QR (tĩnh hoặc xoay vòng theo HMAC) */
+    private Qr qr = new Qr();
+
+    /** Giới hạn đồng thời cho endpoint check-in (chống "bão quét" QR) */
+    private Admission admission = new Admission();
+
+    /** Bảng tổng hợp điểm danh theo sinh viên (báo cáo lớp) */
+    private Summary summary = new Summary();
+
     public int getOnTimeMinutes() {
       return onTimeMinutes;
     }
@@ -119,6 +184,227 @@ public class AppProperties {
     public void setOnTimeMinutes(int onTimeMinutes) {
       this.onTimeMinutes = onTimeMinutes;
     }
+
+    public double getMaxDistanceMeters() {
+      return maxDistanceMeters;
+    }
+
+    public void setMaxDistanceMeters(double maxDistanceMeters) {
+      this.maxDistanceMeters = maxDistanceMeters;
+    }
+
+    public WriteBehind getWriteBehind() {
+      return writeBehind;
+    }
+
+    public void setWriteBehind(WriteBehind writeBehind) {
+      this.writeBehind = writeBehind;
+    }
+
+    public Qr getQr() {
+      return qr;
+    }
+
+    public void setQr(Qr qr) {
+      this.qr = qr;
+    }
+
+    public Summary getSummary() {
+      return summary;
+    }
+
+    public void setSummary(Summary summary) {
+      this.summary = summary;
+    }
+
+    public Admission getAdmission() {
+      return admission;
+    }
+
+    public void setAdmission(Admission admission) {
+      this.admission = admission;
+    }
+  }
+
+  public static class Summary {
+    /** Lịch tính lại attendance_summary để sửa chênh lệch (cron Spring, "-" = tắt) */
+    private String rebuildCron = "0 30 3 * * *";
+
+    public String getRebuildCron() {
+      return rebuildCron;
+    }
+
+    public void setRebuildCron(String rebuildCron) {
+      this.rebuildCron = rebuildCron;
+    }
+  }
+
+  public static class Admission {
+    private boolean enabled = true;
+    /** Số check-in xử lý đồng thời tối đa trên toàn node */
+    private int maxConcurrent = 64;
+    /** Số check-in xử lý đồng thời tối đa cho 1 buổi học */
+    private int maxConcurrentPerSession = 16;
+    /** Số request được xếp hàng chờ; vượt quá -> 429 ngay (platform thread: tối đa 1/4 server.tomcat.threads.max) */
+    private int maxQueue = 200;
+    /** Thời gian chờ tối đa trong hàng (ms); hết hạn -> 429 */
+    private long maxWaitMs = 2000;
+    /** Giá trị header Retry-After (giây) khi trả 429 */
+    private long retryAfterSeconds = 2;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getMaxConcurrent() {
+      return maxConcurrent;
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+      this.maxConcurrent = maxConcurrent;
+    }
+
+    public int getMaxConcurrentPerSession() {
+      return maxConcurrentPerSession;
+    }
+
+    public void setMaxConcurrentPerSession(int maxConcurrentPerSession) {
+      this.maxConcurrentPerSession = maxConcurrentPerSession;
+    }
+
+    public int getMaxQueue() {
+      return maxQueue;
+    }
+
+    public void setMaxQueue(int maxQueue) {
+      this.maxQueue = maxQueue;
+    }
+
+    public long getMaxWaitMs() {
+      return maxWaitMs;
+    }
+
+    public void setMaxWaitMs(long maxWaitMs) {
+      this.maxWaitMs = maxWaitMs;
+    }
+
+    public long getRetryAfterSeconds() {
+      return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(long retryAfterSeconds) {
+      this.retryAfterSeconds = retryAfterSeconds;
+    }
+  }
+
+  public static class Qr {
+    /** true: token QR = HMAC(sessionId, time-slot), đổi mỗi slotSeconds; false: token tĩnh như cũ */
+    private boolean rotating;
+    /** Độ dài 1 slot (giây) */
+    private int slotSeconds = 10;
+    /** Số slot trước đó vẫn được chấp nhận (bù độ trễ quét/mạng) */
+    private int acceptedPreviousSlots = 2;
+    /** Khoá HMAC; để trống thì dùng app.jwt.secret */
+    private String secret;
+
+    public boolean isRotating() {
+      return rotating;
+    }
+
+    public void setRotating(boolean rotating) {
+      this.rotating = rotating;
+    }
+
+    public int getSlotSeconds() {
+      return slotSeconds;
+    }
+
+    public void setSlotSeconds(int slotSeconds) {
+      this.slotSeconds = slotSeconds;
+    }
+
+    public int getAcceptedPreviousSlots() {
+      return acceptedPreviousSlots;
+    }
+
+    public void setAcceptedPreviousSlots(int acceptedPreviousSlots) {
+      this.acceptedPreviousSlots = acceptedPreviousSlots;
+    }
+
+    public String getSecret() {
+      return secret;
+    }
+
+    public void setSecret(String secret) {
+      this.secret = secret;
+    }
+  }
+
+  public static class WriteBehind {
+    /** Bật/tắt pipeline (mặc định tắt: save đồng bộ như cũ) */
+    private boolean enabled;
+    /** Chu kỳ flush tối đa (ms) = cửa sổ dữ liệu có thể mất nếu process chết đột ngột */
+    private long flushIntervalMs = 200;
+    /** Số bản ghi tối đa mỗi câu INSERT nhiều dòng */
+    private int batchSize = 200;
+    /** Dung lượng hàng đợi; đầy thì check-in quay về save đồng bộ */
+    private int capacity = 10000;
+    /** Số lần ghi lỗi tối đa của 1 bản ghi trước khi chuyển vào file dead-letter */
+    private int maxAttempts = 5;
+    /** File NDJSON chứa bản ghi không ghi được vào DB (nhập lại bằng tay) */
+    private String deadLetterFile = "dead-letter/attendance.ndjson";
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public long getFlushIntervalMs() {
+      return flushIntervalMs;
+    }
+
+    public void setFlushIntervalMs(long flushIntervalMs) {
+      this.flushIntervalMs = flushIntervalMs;
+    }
+
+    public int getBatchSize() {
+      return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+      this.batchSize = batchSize;
+    }
+
+    public int getCapacity() {
+      return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+      this.capacity = capacity;
+    }
+
+    public int getMaxAttempts() {
+      return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+      this.maxAttempts = maxAttempts;
+    }
+
+    public String getDeadLetterFile() {
+      return deadLetterFile;
+    }
+
+    public void setDeadLetterFile(String deadLetterFile) {
+      this.deadLetterFile = deadLetterFile;
+    }
   }
 
   public static class Upload {
@@ -133,4 +419,159 @@ public class AppProperties {
       this.dir = dir;
     }
   }
+
+  public static class VirtualThreads {
+    /** Theo dõi sự kiện JFR jdk.VirtualThreadPinned (chỉ khi spring.threads.virtual.enabled=true) */
+    private boolean pinningMonitor = true;
+    /** Chỉ ghi nhận lần pin kéo dài hơn ngưỡng này (ms) */
+    private long pinningThresholdMs = 20;
+
+    public boolean isPinningMonitor() {
+      return pinningMonitor;
+    }
+
+    public void setPinningMonitor(boolean pinningMonitor) {
+      this.pinningMonitor = pinningMonitor;
+    }
+
+    public long getPinningThresholdMs() {
+      return pinningThresholdMs;
+    }
+
+    public void setPinningThresholdMs(long pinningThresholdMs) {
+      this.pinningThresholdMs = pinningThresholdMs;
+    }
+  }
+
+  public static class LiveFeed {
+    /** Chu kỳ gửi heartbeat để proxy/Render không cắt kết nối SSE đang rảnh (giây) */
+    private long heartbeatSeconds = 15;
+    /** Số sự kiện tối đa chờ gửi cho 1 trình duyệt; đầy -> đóng kết nối, client tự kết nối lại */
+    private int bufferSize = 256;
+    /** Số kết nối SSE tối đa cho 1 buổi học */
+    private int maxSubscribersPerSession = 10;
+    /** Thời gian sống tối đa của 1 kết nối SSE (phút) */
+    private long timeoutMinutes = 30;
+
+    public long getHeartbeatSeconds() {
+      return heartbeatSeconds;
+    }
+
+    public void setHeartbeatSeconds(long heartbeatSeconds) {
+      this.heartbeatSeconds = heartbeatSeconds;
+    }
+
+    public int getBufferSize() {
+      return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+      this.bufferSize = bufferSize;
+    }
+
+    public int getMaxSubscribersPerSession() {
+      return maxSubscribersPerSession;
+    }
+
+    public void setMaxSubscribersPerSession(int maxSubscribersPerSession) {
+      this.maxSubscribersPerSession = maxSubscribersPerSession;
+    }
+
+    public long getTimeoutMinutes() {
+      return timeoutMinutes;
+    }
+
+    public void setTimeoutMinutes(long timeoutMinutes) {
+      this.timeoutMinutes = timeoutMinutes;
+    }
+  }
+
+  public static class Export {
+    /** Thư mục lưu file export đã tạo (cache theo lớp + phiên bản dữ liệu) */
+    private String dir = "exports";
+    /** Số job export chạy song song */
+    private int workers = 2;
+    /** Số job tối đa chờ trong hàng đợi; đầy -> 429 */
+    private int queueCapacity = 20;
+    /** Thời gian giữ job + file sau khi xong (phút) */
+    private long ttlMinutes = 60;
+    /** Số dòng driver JDBC lấy mỗi lượt khi export CSV/NDJSON bằng cursor */
+    private int fetchSize = 500;
+
+    public String getDir() {
+      return dir;
+    }
+
+    public void setDir(String dir) {
+      this.dir = dir;
+    }
+
+    public int getWorkers() {
+      return workers;
+    }
+
+    public void setWorkers(int workers) {
+      this.workers = workers;
+    }
+
+    public int getQueueCapacity() {
+      return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+      this.queueCapacity = queueCapacity;
+    }
+
+    public long getTtlMinutes() {
+      return ttlMinutes;
+    }
+
+    public void setTtlMinutes(long ttlMinutes) {
+      this.ttlMinutes = ttlMinutes;
+    }
+
+    public int getFetchSize() {
+      return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+      this.fetchSize = fetchSize;
+    }
+  }
+
+  public static class Migrations {
+    /** Chạy db/migration/V*__*.sql lúc khởi động (tắt khi schema do công cụ khác quản lý) */
+    private boolean enabled = true;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+  }
+
+  public static class Cache {
+    /** Số phần tử tối đa của mỗi cache (users, classes); vượt quá thì bỏ phần tử ít dùng nhất */
+    private int maxSize = 10000;
+    /** Thời gian sống của 1 phần tử kể từ lúc nạp (chặn trên độ trễ nếu có ghi không đi qua repository) */
+    private long ttlSeconds = 300;
+
+    public int getMaxSize() {
+      return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    public long getTtlSeconds() {
+      return ttlSeconds;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+      this.ttlSeconds = ttlSeconds;
+    }
+  }
 }
@@ -0,0 +1,95 @@
+package com.config;
+
+import com.util.BoundedTtlCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Cache dữ liệu gần như không đổi: user theo id (tên giảng viên, /auth/me) và lớp theo id (kiểm tra quyền).
+ *
+ * - Cache gắn trên repository (@Cacheable findById, @CacheEvict save/delete) nên mọi ghi qua repository
+ *   đều tự evict; app.cache.ttl-seconds chặn trên độ trễ nếu dữ liệu bị sửa ngoài ứng dụng.
+ * - Số liệu hit/miss/put/eviction: /actuator/metrics/cache.gets?tag=cache:users&tag=result:hit, ...
+ *   (Spring Boot tự đăng ký mọi cache của CacheManager qua {@link CacheMeterBinderProvider}).
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+  public static final String USERS = "users";
+  public static final String CLASSES = "classes";
+
+  @Bean
+  public CacheManager cacheManager(AppProperties props) {
+    AppProperties.Cache cfg = props.getCache();
+    Duration ttl = Duration.ofSeconds(cfg.getTtlSeconds());
+
+    SimpleCacheManager manager = new SimpleCacheManager();
+    manager.setCaches(List.of(
+        new BoundedTtlCache(USERS, cfg.getMaxSize(), ttl),
+        new BoundedTtlCache(CLASSES, cfg.getMaxSize(), ttl)
+    ));
+    return manager;
+  }
+
+  @Bean
+  public CacheMeterBinderProvider<BoundedTtlCache> boundedTtlCacheMeterBinderProvider() {
+    return (cache, tags) -> new BoundedTtlCacheMetrics(cache, tags);
+  }
+
+  static class BoundedTtlCacheMetrics extends CacheMeterBinder<BoundedTtlCache> {
+
+    BoundedTtlCacheMetrics(BoundedTtlCache cache, Iterable<Tag> tags) {
+      super(cache, cache.getName(), tags);
+    }
+
+    @Override
+    protected Long size() {
+      BoundedTtlCache cache = getCache();
+      return cache == null ? null : cache.size();
+    }
+
+    @Override
+    protected long hitCount() {
+      BoundedTtlCache cache = getCache();
+      return cache == null ? 0 : cache.hitCount();
+    }
+
+    @Override
+    protected Long missCount() {
+      BoundedTtlCache cache = getCache();
+      return cache == null ? null : cache.missCount();
+    }
+
+    @Override
+    protected Long evictionCount() {
+      BoundedTtlCache cache = getCache();
+      return cache == null ? null : cache.evictionCount();
+    }
+
+    @Override
+    protected long putCount() {
+      BoundedTtlCache cache = getCache();
+      return cache == null ? 0 : cache.putCount();
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+      Gauge.builder("cache.max.size", getCache(), BoundedTtlCache::maxSize)
+          .tags(getTagsWithCacheName())
+          .description("Maximum number of entries before least recently used ones are evicted")
+          .register(registry);
+    }
+  }
+}
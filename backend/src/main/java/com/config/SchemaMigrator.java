@@ -0,0 +1,183 @@
+package com.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Migration schema có đánh version (PostgreSQL), thay cho Hibernate ddl-auto.
+ *
+ * - File: classpath:db/migration/V{version}__{mô tả}.sql (cùng quy ước tên với Flyway).
+ * - Bảng schema_migrations lưu version đã chạy + checksum; file đã chạy mà bị sửa -> dừng khởi động.
+ * - Mỗi file chạy trong 1 transaction; advisory lock để nhiều instance khởi động cùng lúc không chạy trùng.
+ * - Chạy TRƯỚC khi tạo EntityManagerFactory (xem {@link EntityManagerFactoryDependsOnMigrator}).
+ */
+@Component("schemaMigrator")
+public class SchemaMigrator implements InitializingBean {
+
+  private static final Logger log = LoggerFactory.getLogger(SchemaMigrator.class);
+
+  private static final String LOCATION = "classpath:db/migration/V*__*.sql";
+  private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+  /** Khoá pg_advisory_lock riêng cho migration. */
+  private static final long LOCK_KEY = 0x51A77E4D_0000_0001L;
+
+  private record Migration(int version, String description, Resource resource, String checksum) {}
+
+  private final DataSource dataSource;
+  private final AppProperties props;
+
+  public SchemaMigrator(DataSource dataSource, AppProperties props) {
+    this.dataSource = dataSource;
+    this.props = props;
+  }
+
+  @Override
+  public void afterPropertiesSet() throws Exception {
+    if (!props.getMigrations().isEnabled()) {
+      log.info("Schema migrations disabled (app.migrations.enabled=false)");
+      return;
+    }
+    migrate();
+  }
+
+  public void migrate() throws SQLException, IOException {
+    List<Migration> migrations = load();
+
+    try (Connection con = dataSource.getConnection()) {
+      con.setAutoCommit(true);
+      try (Statement st = con.createStatement()) {
+        st.execute("SELECT pg_advisory_lock(" + LOCK_KEY + ")");
+      }
+      try {
+        ensureHistoryTable(con);
+        Map<Integer, String> applied = applied(con);
+
+        int ran = 0;
+        for (Migration m : migrations) {
+          String checksum = applied.get(m.version());
+          if (checksum != null) {
+            if (!checksum.equals(m.checksum())) {
+              throw new IllegalStateException("Migration V" + m.version() + " was modified after being applied");
+            }
+            continue;
+          }
+          apply(con, m);
+          ran++;
+        }
+        log.info("Schema up to date: {} migration(s) applied now, {} total", ran, migrations.size());
+      } finally {
+        try (Statement st = con.createStatement()) {
+          st.execute("SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+        }
+      }
+    }
+  }
+
+  private List<Migration> load() throws IOException {
+    Resource[] resources = new PathMatchingResourcePatternResolver().getResources(LOCATION);
+    List<Migration> list = new ArrayList<>();
+    Map<Integer, String> seen = new HashMap<>();
+    for (Resource r : resources) {
+      Matcher m = FILE_NAME.matcher(String.valueOf(r.getFilename()));
+      if (!m.matches()) continue;
+      int version = Integer.parseInt(m.group(1));
+      if (seen.put(version, r.getFilename()) != null) {
+        throw new IllegalStateException("Duplicate migration version V" + version);
+      }
+      list.add(new Migration(version, m.group(2).replace('_', ' '), r, checksum(r)));
+    }
+    list.sort(Comparator.comparingInt(Migration::version));
+    return list;
+  }
+
+  private static void ensureHistoryTable(Connection con) throws SQLException {
+    try (Statement st = con.createStatement()) {
+      st.execute("""
+          CREATE TABLE IF NOT EXISTS schema_migrations (
+            version      integer PRIMARY KEY,
+            description  varchar(200) NOT NULL,
+            checksum     varchar(64) NOT NULL,
+            installed_at timestamp NOT NULL DEFAULT now(),
+            execution_ms bigint NOT NULL
+          )
+          """);
+    }
+  }
+
+  private static Map<Integer, String> applied(Connection con) throws SQLException {
+    Map<Integer, String> applied = new HashMap<>();
+    try (Statement st = con.createStatement();
+         ResultSet rs = st.executeQuery("SELECT version, checksum FROM schema_migrations")) {
+      while (rs.next()) applied.put(rs.getInt(1), rs.getString(2));
+    }
+    return applied;
+  }
+
+  private static void apply(Connection con, Migration m) throws SQLException {
+    long start = System.currentTimeMillis();
+    con.setAutoCommit(false);
+    try {
+      ScriptUtils.executeSqlScript(con, new EncodedResource(m.resource(), StandardCharsets.UTF_8));
+      try (PreparedStatement ps = con.prepareStatement(
+          "INSERT INTO schema_migrations (version, description, checksum, execution_ms) VALUES (?, ?, ?, ?)")) {
+        ps.setInt(1, m.version());
+        ps.setString(2, m.description());
+        ps.setString(3, m.checksum());
+        ps.setLong(4, System.currentTimeMillis() - start);
+        ps.executeUpdate();
+      }
+      con.commit();
+      log.info("Applied migration V{} ({}) in {} ms", m.version(), m.description(), System.currentTimeMillis() - start);
+    } catch (SQLException | RuntimeException e) {
+      con.rollback();
+      throw new IllegalStateException("Migration V" + m.version() + " failed: " + e.getMessage(), e);
+    } finally {
+      con.setAutoCommit(true);
+    }
+  }
+
+  private static String checksum(Resource r) throws IOException {
+    try (InputStream in = r.getInputStream()) {
+      // Bỏ \r để checksum không đổi giữa checkout Windows / Linux
+      String sql = new String(in.readAllBytes(), StandardCharsets.UTF_8).replace("\r", "");
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(sql.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** EntityManagerFactory (và mọi repository) chỉ được tạo sau khi migration chạy xong. */
+  @Component
+  static class EntityManagerFactoryDependsOnMigrator extends EntityManagerFactoryDependsOnPostProcessor {
+    EntityManagerFactoryDependsOnMigrator() {
+      super("schemaMigrator");
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package com.config;
 
 import com.security.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -45,12 +46,17 @@ public class SecurityConfig {
             )
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                // SSE: lượt dispatch ASYNC/ERROR sau khi emitter kết thúc không mang lại JWT
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                 .requestMatchers(
                     "/",
                     "/api/auth/**",
                     "/login/oauth2/**",
-                    "/uploads/**"
+                    "/uploads/**",
+                    "/actuator/health"
                 ).permitAll()
+                // Metric vận hành (Micrometer): chỉ giảng viên, sinh viên không được xem
+                .requestMatchers("/actuator/**").hasRole("TEACHER")
                 .anyRequest().authenticated()
             )
             .addFilterBefore(
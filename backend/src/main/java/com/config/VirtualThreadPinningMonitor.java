@@ -0,0 +1,108 @@
+package com.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chẩn đoán virtual thread bị "pin" vào carrier thread.
+ *
+ * Khi virtual thread block bên trong khối synchronized (vd: 1 số đoạn trong JDBC driver, POI),
+ * nó không nhả carrier thread -> mất lợi ích của virtual thread. Component này nghe sự kiện JFR
+ * jdk.VirtualThreadPinned (ngưỡng app.virtual-threads.pinning-threshold-ms), đếm vào metric
+ * jvm.virtual_threads.pinned và log stack trace 1 lần cho mỗi vị trí khác nhau.
+ *
+ * Chỉ bật khi spring.threads.virtual.enabled=true.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadPinningMonitor {
+
+  private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+  private static final String EVENT = "jdk.VirtualThreadPinned";
+  private static final int MAX_LOGGED_FRAMES = 12;
+
+  private final boolean enabled;
+  private final Duration threshold;
+  private final Counter pinned;
+
+  /** Các vị trí (frame đầu tiên trong code của app/thư viện) đã log, tránh spam log. */
+  private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+
+  private RecordingStream stream;
+
+  public VirtualThreadPinningMonitor(AppProperties props, MeterRegistry meters) {
+    AppProperties.VirtualThreads cfg = props.getVirtualThreads();
+    this.enabled = cfg.isPinningMonitor();
+    this.threshold = Duration.ofMillis(Math.max(cfg.getPinningThresholdMs(), 0));
+    this.pinned = Counter.builder("jvm.virtual_threads.pinned")
+        .description("Virtual thread pinning events longer than the configured threshold")
+        .register(meters);
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!enabled) return;
+    try {
+      stream = new RecordingStream();
+      stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+      stream.onEvent(EVENT, this::onPinned);
+      stream.startAsync();
+      log.info("Virtual thread pinning monitor started (threshold {} ms)", threshold.toMillis());
+    } catch (RuntimeException e) {
+      // JFR có thể bị tắt trên 1 số JVM/container -> không chặn app khởi động
+      log.warn("Cannot start virtual thread pinning monitor: {}", e.getMessage());
+      stream = null;
+    }
+  }
+
+  private void onPinned(RecordedEvent event) {
+    pinned.increment();
+
+    RecordedStackTrace st = event.getStackTrace();
+    String site = firstInterestingFrame(st);
+    if (!reportedSites.add(site)) return;
+
+    StringBuilder sb = new StringBuilder();
+    if (st != null) {
+      int n = 0;
+      for (RecordedFrame f : st.getFrames()) {
+        if (n++ >= MAX_LOGGED_FRAMES) break;
+        sb.append("\n    at ").append(f.getMethod().getType().getName())
+            .append('.').append(f.getMethod().getName())
+            .append(':').append(f.getLineNumber());
+      }
+    }
+    log.warn("Virtual thread pinned for {} ms at {}{}", event.getDuration().toMillis(), site, sb);
+  }
+
+  /** Frame đầu tiên ngoài JDK, dùng làm khoá gom log. */
+  private static String firstInterestingFrame(RecordedStackTrace st) {
+    if (st == null) return "unknown";
+    for (RecordedFrame f : st.getFrames()) {
+      String type = f.getMethod().getType().getName();
+      if (type.startsWith("java.") || type.startsWith("jdk.") || type.startsWith("sun.")) continue;
+      return type + "." + f.getMethod().getName();
+    }
+    return st.getFrames().isEmpty() ? "unknown" : st.getFrames().get(0).getMethod().getName();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (stream != null) stream.close();
+  }
+}
@@ -13,7 +13,12 @@ import java.time.LocalDateTime;
 @Entity
 @Table(
     name = "Attendance",
-    uniqueConstraints = {@UniqueConstraint(name = "uq_session_student", columnNames = {"sessionId", "studentId"})}
+    uniqueConstraints = {@UniqueConstraint(name = "uq_session_student", columnNames = {"sessionId", "studentId"})},
+    // Đọc delta theo cursor (checkInTime, id) trong 1 session: index scan, không sort
+    indexes = {
+        @Index(name = "idx_attendance_session_time_id", columnList = "sessionId, checkInTime, id"),
+        @Index(name = "idx_attendance_student_session", columnList = "studentId, sessionId")
+    }
 )
 public class Attendance {
 
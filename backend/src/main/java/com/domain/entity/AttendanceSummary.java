@@ -0,0 +1,104 @@
+package com.domain.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bảng AttendanceSummary: số liệu điểm danh tổng hợp sẵn của 1 sinh viên trong 1 lớp.
+ *
+ * Được cập nhật cùng câu lệnh ghi Attendance (AttendanceInsertRepository) và tính lại khi xoá buổi học;
+ * job AttendanceSummaryRebuildJob sửa chênh lệch định kỳ. Báo cáo lớp chỉ cần đọc O(số sinh viên) dòng.
+ * Unique (classId, studentId).
+ */
+@Entity
+@Table(
+    name = "AttendanceSummary",
+    uniqueConstraints = {@UniqueConstraint(name = "uq_summary_class_student", columnNames = {"classId", "studentId"})}
+)
+public class AttendanceSummary {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(nullable = false)
+  private Long classId;
+
+  @Column(nullable = false)
+  private Long studentId;
+
+  /** Số bản ghi ON_TIME */
+  @Column(nullable = false)
+  private Long onTime = 0L;
+
+  /** Số bản ghi LATE */
+  @Column(nullable = false)
+  private Long late = 0L;
+
+  /** Số bản ghi có trạng thái ABSENT (buổi không có bản ghi không tính ở đây) */
+  @Column(nullable = false)
+  private Long absentCount = 0L;
+
+  @Column
+  private LocalDateTime lastCheckIn;
+
+  public AttendanceSummary() {
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public void setId(Long id) {
+    this.id = id;
+  }
+
+  public Long getClassId() {
+    return classId;
+  }
+
+  public void setClassId(Long classId) {
+    this.classId = classId;
+  }
+
+  public Long getStudentId() {
+    return studentId;
+  }
+
+  public void setStudentId(Long studentId) {
+    this.studentId = studentId;
+  }
+
+  public Long getOnTime() {
+    return onTime;
+  }
+
+  public void setOnTime(Long onTime) {
+    this.onTime = onTime;
+  }
+
+  public Long getLate() {
+    return late;
+  }
+
+  public void setLate(Long late) {
+    this.late = late;
+  }
+
+  public Long getAbsentCount() {
+    return absentCount;
+  }
+
+  public void setAbsentCount(Long absentCount) {
+    this.absentCount = absentCount;
+  }
+
+  public LocalDateTime getLastCheckIn() {
+    return lastCheckIn;
+  }
+
+  public void setLastCheckIn(LocalDateTime lastCheckIn) {
+    this.lastCheckIn = lastCheckIn;
+  }
+}
@@ -11,11 +11,14 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "Classes", uniqueConstraints = {
     @UniqueConstraint(name = "uq_teacher_classname_norm", columnNames = {"teacherId", "normalizedName"})
+}, indexes = {
+    @Index(name = "idx_classes_teacher_created", columnList = "teacherId, createdAt")
 })
 public class ClassEntity {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "classes_seq")
+  @SequenceGenerator(name = "classes_seq", sequenceName = "classes_seq", allocationSize = 50)
   private Long id;
 
   @Column(nullable = false)
@@ -11,12 +11,14 @@ import java.time.LocalDateTime;
 @Entity
 @Table(
     name = "ClassMembers",
-    uniqueConstraints = {@UniqueConstraint(name = "uq_class_student", columnNames = {"classId", "studentId"})}
+    uniqueConstraints = {@UniqueConstraint(name = "uq_class_student", columnNames = {"classId", "studentId"})},
+    indexes = {@Index(name = "idx_class_members_student", columnList = "studentId, classId")}
 )
 public class ClassMember {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "class_members_seq")
+  @SequenceGenerator(name = "class_members_seq", sequenceName = "class_members_seq", allocationSize = 50)
   private Long id;
 
   @Column(nullable = false)
@@ -11,15 +11,19 @@ import java.time.LocalDateTime;
  * - status: OPEN/CLOSED
  * - qrToken + qrTokenExpiresAt: token QR dùng để sinh viên check-in
  * - teacherLat/teacherLng: vị trí giảng viên tại thời điểm mở QR (nếu có kiểm tra khoảng cách)
+ * - geofenceRadiusMeters/geofencePolygon: vùng điểm danh riêng của buổi học (null = mặc định)
  */
 @Entity
 @Table(name = "Sessions", uniqueConstraints = {
     @UniqueConstraint(name = "uq_class_sessiontitle_norm", columnNames = {"classId", "normalizedTitle"})
+}, indexes = {
+    @Index(name = "idx_sessions_class_date", columnList = "classId, sessionDate")
 })
 public class SessionEntity {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sessions_seq")
+  @SequenceGenerator(name = "sessions_seq", sequenceName = "sessions_seq", allocationSize = 50)
   private Long id;
 
   @Column(nullable = false)
@@ -53,6 +57,14 @@ public class SessionEntity {
   @Column(precision = 10, scale = 7)
   private BigDecimal teacherLng;
 
+  /** Bán kính điểm danh (m) đặt lúc mở session; null = app.attendance.max-distance-meters. */
+  @Column
+  private Double geofenceRadiusMeters;
+
+  /** Đa giác vùng điểm danh dạng "lat,lng;lat,lng;..." (tuỳ chọn, cho giảng đường lớn). */
+  @Column(length = 4000)
+  private String geofencePolygon;
+
   @Column(nullable = false)
   private LocalDateTime createdAt;
 
@@ -152,6 +164,22 @@ public class SessionEntity {
     this.teacherLng = teacherLng;
   }
 
+  public Double getGeofenceRadiusMeters() {
+    return geofenceRadiusMeters;
+  }
+
+  public void setGeofenceRadiusMeters(Double geofenceRadiusMeters) {
+    this.geofenceRadiusMeters = geofenceRadiusMeters;
+  }
+
+  public String getGeofencePolygon() {
+    return geofencePolygon;
+  }
+
+  public void setGeofencePolygon(String geofencePolygon) {
+    this.geofencePolygon = geofencePolygon;
+  }
+
   public LocalDateTime getCreatedAt() {
     return createdAt;
   }
@@ -2,6 +2,7 @@
 package com.exception;
 
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
@@ -36,6 +37,19 @@ public class GlobalExceptionHandler {
         .body(Map.of("message", "Method not allowed"));
   }
 
+  /**
+   * 429 + Retry-After: client (app quét QR) chờ rồi gửi lại thay vì retry dồn dập.
+   */
+  @ExceptionHandler(TooManyRequestsException.class)
+  public ResponseEntity<Map<String, Object>> handle(TooManyRequestsException ex) {
+    java.util.Map<String, Object> body = new java.util.LinkedHashMap<>();
+    body.put("message", ex.getMessage());
+    body.putAll(ex.getDetails());
+    return ResponseEntity.status(ex.getStatus())
+        .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+        .body(body);
+  }
+
   @ExceptionHandler(ApiException.class)
   public ResponseEntity<Map<String, Object>> handle(ApiException ex) {
     if (ex.getDetails() == null || ex.getDetails().isEmpty()) {
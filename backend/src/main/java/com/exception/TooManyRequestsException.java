@@ -0,0 +1,23 @@
+package com.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Lỗi 429 khi hệ thống đang quá tải (load shedding).
+ * GlobalExceptionHandler sẽ gắn header Retry-After = retryAfterSeconds.
+ */
+public class TooManyRequestsException extends ApiException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final long retryAfterSeconds;
+
+  public TooManyRequestsException(String message, long retryAfterSeconds) {
+    super(HttpStatus.TOO_MANY_REQUESTS, message, java.util.Map.of("retryAfterSeconds", retryAfterSeconds));
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
@@ -0,0 +1,106 @@
+package com.repo;
+
+import com.config.AppProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Đọc bản ghi điểm danh bằng cursor (PostgreSQL) cho export CSV/NDJSON.
+ *
+ * - ResultSet forward-only + fetch size cố định: driver chỉ giữ fetchSize dòng trong RAM mỗi lượt.
+ * - PostgreSQL chỉ dùng cursor khi autocommit tắt -> chạy trong transaction read-only.
+ * - Mỗi dòng được đẩy ngay cho consumer (ghi thẳng ra response), không gom thành List.
+ */
+@Repository
+public class AttendanceExportJdbcRepository {
+
+  private static final String SELECT_ROWS = """
+      SELECT a.session_id, s.title, s.session_date, s.class_id, c.code, c.class_name,
+             a.student_id, u.full_name, u.email, a.status, a.check_in_time
+      FROM attendance a
+      JOIN sessions s ON s.id = a.session_id
+      JOIN classes c ON c.id = s.class_id
+      JOIN users u ON u.id = a.student_id
+      WHERE %s
+      ORDER BY s.session_date, s.id, a.check_in_time, a.id
+      """;
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate readOnlyTx;
+  private final int fetchSize;
+
+  public AttendanceExportJdbcRepository(JdbcTemplate jdbc,
+                                        PlatformTransactionManager txManager,
+                                        AppProperties props) {
+    this.jdbc = jdbc;
+    this.readOnlyTx = new TransactionTemplate(txManager);
+    this.readOnlyTx.setReadOnly(true);
+    this.fetchSize = Math.max(props.getExport().getFetchSize(), 1);
+  }
+
+  public void streamBySession(Long sessionId, Consumer<AttendanceExportRow> sink) {
+    stream("a.session_id = ?", List.of(sessionId), sink);
+  }
+
+  public void streamByClass(Long classId, Consumer<AttendanceExportRow> sink) {
+    stream("s.class_id = ?", List.of(classId), sink);
+  }
+
+  /** Tất cả lớp của giảng viên, lọc theo ngày buổi học [from, to] (null = không giới hạn). */
+  public void streamByTeacher(Long teacherId, LocalDate from, LocalDate to, Consumer<AttendanceExportRow> sink) {
+    StringBuilder where = new StringBuilder("c.teacher_id = ?");
+    List<Object> args = new ArrayList<>(List.of(teacherId));
+    if (from != null) {
+      where.append(" AND s.session_date >= ?");
+      args.add(Timestamp.valueOf(from.atStartOfDay()));
+    }
+    if (to != null) {
+      where.append(" AND s.session_date < ?");
+      args.add(Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+    }
+    stream(where.toString(), args, sink);
+  }
+
+  private void stream(String where, List<Object> args, Consumer<AttendanceExportRow> sink) {
+    String sql = SELECT_ROWS.formatted(where);
+    RowCallbackHandler handler = rs -> sink.accept(map(rs));
+    readOnlyTx.executeWithoutResult(status -> jdbc.query(con -> {
+      PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      ps.setFetchSize(fetchSize);
+      for (int i = 0; i < args.size(); i++) ps.setObject(i + 1, args.get(i));
+      return ps;
+    }, handler));
+  }
+
+  private static AttendanceExportRow map(ResultSet rs) throws java.sql.SQLException {
+    return new AttendanceExportRow(
+        rs.getLong(1),
+        rs.getString(2),
+        toLocal(rs.getTimestamp(3)),
+        rs.getLong(4),
+        rs.getString(5),
+        rs.getString(6),
+        rs.getLong(7),
+        rs.getString(8),
+        rs.getString(9),
+        rs.getString(10),
+        toLocal(rs.getTimestamp(11))
+    );
+  }
+
+  private static LocalDateTime toLocal(Timestamp ts) {
+    return ts == null ? null : ts.toLocalDateTime();
+  }
+}
@@ -0,0 +1,21 @@
+package com.repo;
+
+import java.time.LocalDateTime;
+
+/**
+ * 1 bản ghi điểm danh "thô" cho export CSV/NDJSON
+ * (đọc bằng cursor, xem AttendanceExportJdbcRepository).
+ */
+public record AttendanceExportRow(
+    Long sessionId,
+    String sessionTitle,
+    LocalDateTime sessionDate,
+    Long classId,
+    String classCode,
+    String className,
+    Long studentId,
+    String fullName,
+    String email,
+    String status,
+    LocalDateTime checkInTime
+) {}
@@ -0,0 +1,120 @@
+package com.repo;
+
+import com.domain.entity.Attendance;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ghi Attendance bằng SQL thuần (PostgreSQL), dựa trên ràng buộc uq_session_student.
+ *
+ * Dùng JdbcTemplate thay vì Spring Data vì:
+ * - INSERT ... ON CONFLICT DO NOTHING RETURNING id: 1 round trip vừa ghi vừa biết "mới tạo" hay "đã có".
+ * - Attendance dùng IDENTITY nên Hibernate không gom batch được; INSERT nhiều dòng phải tự dựng.
+ * - Cùng statement (CTE) cộng dồn vào attendance_summary cho các dòng thực sự được ghi
+ *   -> bảng tổng hợp luôn khớp với attendance mà không tốn thêm round trip.
+ * - Chỉ ghi dòng có session còn tồn tại và sinh viên còn là thành viên lớp (JOIN, không có FK).
+ *   FOR SHARE giữ 2 dòng đó tới hết transaction; deleteSession/deleteClass khoá session FOR UPDATE,
+ *   removeMember xoá member trước khi xoá attendance/tổng hợp nên không thể xoá chen giữa và để lại
+ *   bản ghi mồ côi (hay dòng tổng hợp của người đã rời lớp).
+ */
+@Repository
+public class AttendanceInsertRepository {
+
+  private static final String INSERT_PREFIX = """
+      WITH ins AS (
+        INSERT INTO attendance (session_id, student_id, check_in_time, gps_lat, gps_lng, photo_url, status)
+        SELECT v.session_id, v.student_id, v.check_in_time, v.gps_lat, v.gps_lng, v.photo_url, v.status
+        FROM (VALUES\s""";
+  // Ép kiểu tường minh: VALUES trong FROM suy kiểu theo dòng đầu, tham số null sẽ thành text
+  private static final String INSERT_ROW =
+      "(?::bigint, ?::bigint, ?::timestamp, ?::numeric, ?::numeric, ?::varchar, ?::varchar)";
+  private static final String ON_CONFLICT = """
+      ) AS v (session_id, student_id, check_in_time, gps_lat, gps_lng, photo_url, status)
+        JOIN sessions s ON s.id = v.session_id
+        JOIN class_members m ON m.class_id = s.class_id AND m.student_id = v.student_id
+        FOR SHARE OF s, m
+        ON CONFLICT (session_id, student_id) DO NOTHING
+        RETURNING id, session_id, student_id, check_in_time, status
+      ), summary AS (
+        INSERT INTO attendance_summary (class_id, student_id, on_time, late, absent_count, last_check_in)
+        SELECT s.class_id, ins.student_id,
+               COUNT(*) FILTER (WHERE ins.status = 'ON_TIME'),
+               COUNT(*) FILTER (WHERE ins.status = 'LATE'),
+               COUNT(*) FILTER (WHERE ins.status = 'ABSENT'),
+               MAX(ins.check_in_time)
+        FROM ins JOIN sessions s ON s.id = ins.session_id
+        GROUP BY s.class_id, ins.student_id
+        ON CONFLICT (class_id, student_id) DO UPDATE SET
+          on_time = attendance_summary.on_time + EXCLUDED.on_time,
+          late = attendance_summary.late + EXCLUDED.late,
+          absent_count = attendance_summary.absent_count + EXCLUDED.absent_count,
+          last_check_in = GREATEST(attendance_summary.last_check_in, EXCLUDED.last_check_in)
+      )
+      """;
+
+  private static final String INSERT_ONE_RETURNING = INSERT_PREFIX + INSERT_ROW + ON_CONFLICT + "SELECT id FROM ins";
+
+  private final JdbcTemplate jdbc;
+
+  public AttendanceInsertRepository(JdbcTemplate jdbc) {
+    this.jdbc = jdbc;
+  }
+
+  /**
+   * Ghi 1 bản ghi nếu sinh viên chưa điểm danh buổi này.
+   * @return id mới, hoặc null nếu đã tồn tại (sessionId, studentId)
+   */
+  public Long insertIfAbsent(Attendance a) {
+    List<Long> ids = jdbc.queryForList(INSERT_ONE_RETURNING, Long.class, rowArgs(a));
+    return ids.isEmpty() ? null : ids.get(0);
+  }
+
+  /**
+   * Ghi nhiều bản ghi bằng 1 câu INSERT nhiều dòng, bỏ qua các dòng trùng, thuộc session đã bị xoá
+   * hoặc của sinh viên không còn trong lớp.
+   * @return các bản ghi thực sự được ghi (đã gán id)
+   */
+  public List<Attendance> insertAllIfAbsent(List<Attendance> rows) {
+    if (rows.isEmpty()) return List.of();
+    StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows.size() * 88 + ON_CONFLICT.length() + 48);
+    sql.append(INSERT_PREFIX);
+    Object[] args = new Object[rows.size() * 7];
+    Map<String, Attendance> byKey = new HashMap<>(rows.size() * 2);
+    int i = 0;
+    for (Attendance a : rows) {
+      if (i > 0) sql.append(", ");
+      sql.append(INSERT_ROW);
+      Object[] one = rowArgs(a);
+      System.arraycopy(one, 0, args, i, one.length);
+      i += one.length;
+      byKey.put(a.getSessionId() + ":" + a.getStudentId(), a);
+    }
+    sql.append(ON_CONFLICT).append("SELECT id, session_id, student_id FROM ins");
+
+    List<Attendance> inserted = new ArrayList<>(rows.size());
+    jdbc.query(sql.toString(), rs -> {
+      Attendance a = byKey.get(rs.getLong("session_id") + ":" + rs.getLong("student_id"));
+      if (a == null) return;
+      a.setId(rs.getLong("id"));
+      inserted.add(a);
+    }, args);
+    return inserted;
+  }
+
+  private static Object[] rowArgs(Attendance a) {
+    return new Object[] {
+        a.getSessionId(),
+        a.getStudentId(),
+        a.getCheckInTime(),
+        a.getGpsLat(),
+        a.getGpsLng(),
+        a.getPhotoUrl(),
+        a.getStatus() == null ? null : a.getStatus().name()
+    };
+  }
+}
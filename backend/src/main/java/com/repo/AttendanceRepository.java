@@ -1,10 +1,13 @@
 package com.repo;
 
 import com.domain.entity.Attendance;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,6 +29,44 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
   """)
   List<Object[]> findBySessionWithUser(@Param("sessionId") Long sessionId);
 
+  // =========================
+  // Delta theo cursor (checkInTime, id): trang đầu / các trang sau cursor
+  // =========================
+  @Query("""
+    SELECT a, u.fullName, u.email
+    FROM Attendance a
+    JOIN User u ON a.studentId = u.id
+    WHERE a.sessionId = :sessionId
+    ORDER BY a.checkInTime ASC, a.id ASC
+  """)
+  List<Object[]> findBySessionWithUserFirst(@Param("sessionId") Long sessionId, Pageable page);
+
+  @Query("""
+    SELECT a, u.fullName, u.email
+    FROM Attendance a
+    JOIN User u ON a.studentId = u.id
+    WHERE a.sessionId = :sessionId
+      AND (a.checkInTime > :afterTime OR (a.checkInTime = :afterTime AND a.id > :afterId))
+    ORDER BY a.checkInTime ASC, a.id ASC
+  """)
+  List<Object[]> findBySessionWithUserAfter(
+      @Param("sessionId") Long sessionId,
+      @Param("afterTime") LocalDateTime afterTime,
+      @Param("afterId") Long afterId,
+      Pageable page
+  );
+
+  // =========================
+  // Đếm số bản ghi theo trạng thái trong 1 buổi học: (status, count)
+  // =========================
+  @Query("""
+    SELECT a.status, COUNT(a)
+    FROM Attendance a
+    WHERE a.sessionId = :sessionId
+    GROUP BY a.status
+  """)
+  List<Object[]> countBySessionGroupByStatus(@Param("sessionId") Long sessionId);
+
   // =========================
   // Lịch sử điểm danh của sinh viên trong 1 lớp
   // =========================
@@ -52,10 +93,26 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
     WHERE s.classId = :classId
   """)
   List<Object[]> findByClassWithSession(@Param("classId") Long classId);
-  // Delete all attendance by session
-  void deleteBySessionId(Long sessionId);
 
-  // Delete all attendance by sessions
-  void deleteBySessionIdIn(java.util.List<Long> sessionIds);
+  // =========================
+  // Trạng thái điểm danh của cả lớp (export): (sessionId, studentId, status)
+  // =========================
+  @Query("""
+    SELECT a.sessionId, a.studentId, a.status
+    FROM Attendance a
+    JOIN SessionEntity s ON a.sessionId = s.id
+    WHERE s.classId = :classId
+  """)
+  List<Object[]> findStatusesByClass(@Param("classId") Long classId);
+
+  // =========================
+  // Xoá hàng loạt (1 câu DELETE, không nạp entity rồi xoá từng dòng như derived delete)
+  // =========================
+  @Modifying
+  @Query("""
+    DELETE FROM Attendance a
+    WHERE a.sessionId IN (SELECT s.id FROM SessionEntity s WHERE s.classId = :classId)
+  """)
+  int deleteByClassId(@Param("classId") Long classId);
 
 }
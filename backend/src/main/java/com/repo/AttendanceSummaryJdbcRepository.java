@@ -0,0 +1,152 @@
+package com.repo;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Bảo trì bảng attendance_summary bằng SQL thuần (PostgreSQL).
+ * Phần cộng dồn khi check-in nằm trong câu INSERT của AttendanceInsertRepository (cùng 1 statement).
+ */
+@Repository
+public class AttendanceSummaryJdbcRepository {
+
+  /** Tổng hợp lại từ attendance cho 1 lớp (tuỳ chọn lọc 1 sinh viên); chỉ ghi dòng thực sự thay đổi. */
+  private static final String UPSERT_FROM_ATTENDANCE = """
+      INSERT INTO attendance_summary (class_id, student_id, on_time, late, absent_count, last_check_in)
+      SELECT s.class_id, a.student_id,
+             COUNT(*) FILTER (WHERE a.status = 'ON_TIME'),
+             COUNT(*) FILTER (WHERE a.status = 'LATE'),
+             COUNT(*) FILTER (WHERE a.status = 'ABSENT'),
+             MAX(a.check_in_time)
+      FROM attendance a
+      JOIN sessions s ON s.id = a.session_id
+      WHERE s.class_id = ? %s
+      GROUP BY s.class_id, a.student_id
+      ON CONFLICT (class_id, student_id) DO UPDATE SET
+        on_time = EXCLUDED.on_time,
+        late = EXCLUDED.late,
+        absent_count = EXCLUDED.absent_count,
+        last_check_in = EXCLUDED.last_check_in
+      WHERE (attendance_summary.on_time, attendance_summary.late, attendance_summary.absent_count,
+             attendance_summary.last_check_in)
+            IS DISTINCT FROM (EXCLUDED.on_time, EXCLUDED.late, EXCLUDED.absent_count, EXCLUDED.last_check_in)
+      """;
+
+  /** Xoá dòng tổng hợp không còn bản ghi attendance nào (vd: sau khi xoá buổi học). */
+  private static final String DELETE_EMPTY = """
+      DELETE FROM attendance_summary sm
+      WHERE sm.class_id = ? %s
+        AND NOT EXISTS (
+          SELECT 1 FROM attendance a
+          JOIN sessions s ON s.id = a.session_id
+          WHERE s.class_id = sm.class_id AND a.student_id = sm.student_id
+        )
+      """;
+
+  /**
+   * Xoá attendance của 1 buổi học và trừ đúng phần đó khỏi bảng tổng hợp trong cùng 1 statement.
+   * Chỉ trừ delta (không ghi đè tổng tuyệt đối): check-in đồng thời ở buổi khác của lớp cộng dồn
+   * vào cùng dòng vẫn được giữ (UPDATE chờ khoá dòng rồi tính lại trên phiên bản mới nhất).
+   * last_check_in chỉ tính lại khi giá trị hiện tại đến từ chính buổi bị xoá.
+   */
+  private static final String DELETE_SESSION_ATTENDANCE = """
+      WITH del AS (
+        DELETE FROM attendance WHERE session_id = ?
+        RETURNING student_id, status, check_in_time
+      ), delta AS (
+        SELECT student_id,
+               COUNT(*) FILTER (WHERE status = 'ON_TIME') AS on_time,
+               COUNT(*) FILTER (WHERE status = 'LATE') AS late,
+               COUNT(*) FILTER (WHERE status = 'ABSENT') AS absent_count,
+               MAX(check_in_time) AS last_deleted
+        FROM del
+        GROUP BY student_id
+      ), upd AS (
+        UPDATE attendance_summary sm SET
+          on_time = sm.on_time - delta.on_time,
+          late = sm.late - delta.late,
+          absent_count = sm.absent_count - delta.absent_count,
+          last_check_in = CASE
+            WHEN sm.last_check_in > delta.last_deleted THEN sm.last_check_in
+            ELSE (SELECT MAX(a.check_in_time) FROM attendance a
+                  JOIN sessions s ON s.id = a.session_id
+                  WHERE s.class_id = sm.class_id AND a.student_id = sm.student_id AND a.session_id <> ?)
+          END
+        FROM delta
+        WHERE sm.class_id = ? AND sm.student_id = delta.student_id
+        RETURNING 1
+      )
+      SELECT COUNT(*) FROM del
+      """;
+
+  private final JdbcTemplate jdbc;
+
+  public AttendanceSummaryJdbcRepository(JdbcTemplate jdbc) {
+    this.jdbc = jdbc;
+  }
+
+  /**
+   * Tính lại toàn bộ dòng tổng hợp của 1 lớp từ bảng attendance.
+   * @return số dòng được sửa/thêm/xoá (0 = không có chênh lệch)
+   */
+  public int rebuildClass(Long classId) {
+    return jdbc.update(UPSERT_FROM_ATTENDANCE.formatted(""), classId)
+        + jdbc.update(DELETE_EMPTY.formatted(""), classId);
+  }
+
+  /**
+   * Xoá attendance của buổi học (thuộc lớp classId) và trừ khỏi bảng tổng hợp; bỏ các dòng về 0.
+   * Dòng về 0 được xoá ở statement riêng: các CTE cùng statement không thấy kết quả UPDATE của nhau.
+   * @return số bản ghi attendance đã xoá
+   */
+  public int deleteSessionAttendance(Long classId, Long sessionId) {
+    Integer deleted = jdbc.queryForObject(DELETE_SESSION_ATTENDANCE, Integer.class, sessionId, sessionId, classId);
+    jdbc.update("""
+        DELETE FROM attendance_summary
+        WHERE class_id = ? AND on_time = 0 AND late = 0 AND absent_count = 0
+        """, classId);
+    return deleted == null ? 0 : deleted;
+  }
+
+  /** Tính lại dòng tổng hợp của 1 sinh viên trong lớp (vd: tham gia lại lớp). */
+  public int rebuildStudent(Long classId, Long studentId) {
+    return jdbc.update(UPSERT_FROM_ATTENDANCE.formatted("AND a.student_id = ?"), classId, studentId)
+        + jdbc.update(DELETE_EMPTY.formatted("AND sm.student_id = ?"), classId, studentId);
+  }
+
+  public void deleteStudent(Long classId, Long studentId) {
+    jdbc.update("DELETE FROM attendance_summary WHERE class_id = ? AND student_id = ?", classId, studentId);
+  }
+
+  public void deleteClass(Long classId) {
+    jdbc.update("DELETE FROM attendance_summary WHERE class_id = ?", classId);
+  }
+
+  /** Dọn dòng của lớp đã bị xoá. */
+  public int deleteOrphans() {
+    return jdbc.update("""
+        DELETE FROM attendance_summary sm
+        WHERE NOT EXISTS (SELECT 1 FROM classes c WHERE c.id = sm.class_id)
+        """);
+  }
+
+  public boolean isEmpty() {
+    List<Integer> one = jdbc.queryForList("SELECT 1 FROM attendance_summary LIMIT 1", Integer.class);
+    return one.isEmpty();
+  }
+
+  /** Lớp không có buổi học nào đang OPEN (an toàn để tính lại khi không có check-in đồng thời). */
+  public List<Long> findClassIdsWithoutOpenSession() {
+    return jdbc.queryForList("""
+        SELECT c.id FROM classes c
+        WHERE NOT EXISTS (SELECT 1 FROM sessions s WHERE s.class_id = c.id AND s.status = 'OPEN')
+        ORDER BY c.id
+        """, Long.class);
+  }
+
+  public List<Long> findAllClassIds() {
+    return jdbc.queryForList("SELECT id FROM classes ORDER BY id", Long.class);
+  }
+}
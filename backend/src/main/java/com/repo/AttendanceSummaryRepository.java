@@ -0,0 +1,30 @@
+package com.repo;
+
+import com.domain.entity.AttendanceSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface AttendanceSummaryRepository extends JpaRepository<AttendanceSummary, Long> {
+
+  // =========================
+  // Báo cáo lớp từ bảng tổng hợp: mỗi sinh viên trong lớp 1 dòng
+  // present = số bản ghi điểm danh (onTime + late + absentCount)
+  // =========================
+  @Query("""
+    SELECT new com.repo.StudentAttendanceCounts(
+      u.id, u.fullName, u.email,
+      COALESCE(sm.onTime + sm.late + sm.absentCount, 0L),
+      COALESCE(sm.onTime, 0L),
+      COALESCE(sm.late, 0L)
+    )
+    FROM ClassMember cm
+    JOIN User u ON cm.studentId = u.id
+    LEFT JOIN AttendanceSummary sm ON sm.classId = cm.classId AND sm.studentId = cm.studentId
+    WHERE cm.classId = :classId
+    ORDER BY u.fullName ASC
+  """)
+  List<StudentAttendanceCounts> findReportByClass(@Param("classId") Long classId);
+}
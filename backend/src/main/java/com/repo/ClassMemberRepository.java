@@ -4,6 +4,7 @@ import com.domain.entity.ClassEntity;
 import com.domain.entity.ClassMember;
 import com.domain.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -17,6 +18,10 @@ public interface ClassMemberRepository extends JpaRepository<ClassMember, Long>
 
   Optional<ClassMember> findByClassIdAndStudentId(Long classId, Long studentId);
 
+  // Chỉ lấy studentId của lớp (dùng để nạp ClassRosterIndex)
+  @Query("SELECT cm.studentId FROM ClassMember cm WHERE cm.classId = :classId")
+  List<Long> findStudentIdsByClass(@Param("classId") Long classId);
+
   // Danh sách lớp mà sinh viên đã tham gia
   @Query("""
     SELECT c, cm.joinedAt
@@ -46,7 +51,9 @@ public interface ClassMemberRepository extends JpaRepository<ClassMember, Long>
     ORDER BY u.fullName ASC
   """)
   List<Object[]> findStudentsByClass(@Param("classId") Long classId);
-  // Delete all members of a class
-  void deleteByClassId(Long classId);
+  // Delete all members of a class (bulk, 1 câu DELETE)
+  @Modifying
+  @Query("DELETE FROM ClassMember cm WHERE cm.classId = :classId")
+  int deleteByClassId(@Param("classId") Long classId);
 
 }
@@ -1,14 +1,35 @@
 package com.repo;
 
+import com.config.CacheConfig;
 import com.domain.entity.ClassEntity;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.List;
 import java.util.Optional;
 
 public interface ClassRepository extends JpaRepository<ClassEntity, Long> {
+  /**
+   * Đọc qua cache "classes". Entity trả về dùng chung giữa các request: chỉ đọc, không sửa trực tiếp
+   * (đường ghi nạp lại bằng {@link #findByIdAndTeacherId}).
+   */
+  @Override
+  @Cacheable(cacheNames = CacheConfig.CLASSES, key = "#p0", unless = "#result == null")
+  Optional<ClassEntity> findById(Long id);
+
+  @Override
+  @CacheEvict(cacheNames = CacheConfig.CLASSES, key = "#result.id")
+  <S extends ClassEntity> S save(S entity);
+
+  @Override
+  @CacheEvict(cacheNames = CacheConfig.CLASSES, key = "#p0.id")
+  void delete(ClassEntity entity);
+
   List<ClassEntity> findByTeacherIdOrderByCreatedAtDesc(Long teacherId);
   Optional<ClassEntity> findByCode(String code);
+  /** Lớp chỉ khi thuộc giảng viên teacherId (kiểm tra quyền ngay trong truy vấn, không qua cache). */
+  Optional<ClassEntity> findByIdAndTeacherId(Long id, Long teacherId);
   boolean existsByTeacherIdAndNormalizedName(Long teacherId, String normalizedName);
   boolean existsByTeacherIdAndNormalizedNameAndIdNot(Long teacherId, String normalizedName, Long id);
 }
@@ -0,0 +1,10 @@
+package com.repo;
+
+import com.domain.entity.ClassEntity;
+import com.domain.entity.SessionEntity;
+
+/**
+ * Projection: buổi học + lớp của nó, đọc bằng 1 JOIN kèm điều kiện giảng viên sở hữu
+ * (xem SessionRepository.findOwnedByTeacher).
+ */
+public record OwnedSession(SessionEntity session, ClassEntity cls) {}
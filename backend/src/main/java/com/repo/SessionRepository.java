@@ -1,9 +1,15 @@
 package com.repo;
 
 import com.domain.entity.SessionEntity;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository thao tác với bảng SessionEntity (buổi học).
@@ -17,11 +23,35 @@ public interface SessionRepository extends JpaRepository<SessionEntity, Long> {
 
   /** Lấy danh sách buổi học của 1 lớp (cũ nhất trước). */
   List<SessionEntity> findByClassIdOrderBySessionDateAsc(Long classId);
+  /** Buổi học + lớp, chỉ khi lớp thuộc giảng viên teacherId (kiểm tra quyền trong 1 truy vấn). */
+  @Query("""
+    SELECT new com.repo.OwnedSession(s, c)
+    FROM SessionEntity s
+    JOIN ClassEntity c ON c.id = s.classId
+    WHERE s.id = :sessionId AND c.teacherId = :teacherId
+  """)
+  Optional<OwnedSession> findOwnedByTeacher(@Param("sessionId") Long sessionId, @Param("teacherId") Long teacherId);
+
   // List sessions by class (unordered)
   List<SessionEntity> findByClassId(Long classId);
 
-  // Delete sessions by class
-  void deleteByClassId(Long classId);
+  /**
+   * Khoá (FOR UPDATE) buổi học trước khi xoá attendance của nó: check-in đang ghi (INSERT ... FOR SHARE,
+   * xem AttendanceInsertRepository) xong trước, check-in đến sau thấy session đã bị xoá và bỏ qua.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT s FROM SessionEntity s WHERE s.id = :sessionId")
+  Optional<SessionEntity> lockById(@Param("sessionId") Long sessionId);
+
+  /** Như lockById, cho mọi buổi học của lớp (trước khi xoá lớp). */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT s FROM SessionEntity s WHERE s.classId = :classId")
+  List<SessionEntity> lockByClassId(@Param("classId") Long classId);
+
+  // Delete sessions by class (bulk, 1 câu DELETE)
+  @Modifying
+  @Query("DELETE FROM SessionEntity s WHERE s.classId = :classId")
+  int deleteByClassId(@Param("classId") Long classId);
 
   boolean existsByClassIdAndNormalizedTitle(Long classId, String normalizedTitle);
   boolean existsByClassIdAndNormalizedTitleAndIdNot(Long classId, String normalizedTitle, Long id);
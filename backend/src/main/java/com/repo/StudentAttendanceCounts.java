@@ -0,0 +1,14 @@
+package com.repo;
+
+/**
+ * Projection: số lần điểm danh của 1 sinh viên trong tất cả buổi học của lớp
+ * (đọc từ bảng tổng hợp, xem AttendanceSummaryRepository.findReportByClass).
+ */
+public record StudentAttendanceCounts(
+    Long studentId,
+    String fullName,
+    String email,
+    Long present,
+    Long onTime,
+    Long late
+) {}
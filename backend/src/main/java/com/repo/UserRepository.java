@@ -1,12 +1,24 @@
 
 package com.repo;
 
+import com.config.CacheConfig;
 import com.domain.entity.User;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
+  /** Đọc qua cache "users" (tên giảng viên, /auth/me). Entity trả về dùng chung: chỉ đọc. */
+  @Override
+  @Cacheable(cacheNames = CacheConfig.USERS, key = "#p0", unless = "#result == null")
+  Optional<User> findById(Long id);
+
+  @Override
+  @CacheEvict(cacheNames = CacheConfig.USERS, key = "#result.id")
+  <S extends User> S save(S entity);
+
   Optional<User> findByEmail(String email);
   Optional<User> findByGoogleId(String googleId);
 }
@@ -0,0 +1,132 @@
+package com.security;
+
+import com.config.AppProperties;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * QR token xoay vòng (stateless).
+ *
+ * token = "<slot base36>.<base64url(HMAC-SHA256(key, sessionId | slot | salt))[0..12 bytes]>"
+ * - slot = epochSeconds / slotSeconds -> màn hình giảng viên đổi mã mỗi slotSeconds
+ * - salt = qrToken ngẫu nhiên sinh lúc openSession -> mở lại session là vô hiệu mọi mã cũ
+ *
+ * Server verify bằng cách tính lại HMAC (chỉ tốn CPU, không cần tra DB) và chỉ chấp nhận
+ * slot hiện tại + acceptedPreviousSlots slot trước đó -> ảnh chụp QR gửi cho bạn vắng mặt sẽ hết hiệu lực.
+ */
+@Component
+public class QrTokenSigner {
+
+  private static final String ALGORITHM = "HmacSHA256";
+  private static final int MAC_BYTES = 12;
+
+  private final boolean rotating;
+  private final long slotSeconds;
+  private final int acceptedPreviousSlots;
+  private final SecretKeySpec key;
+
+  /**
+   * Mac không thread-safe. Mỗi request chạy trên 1 virtual thread mới nên ThreadLocal không giữ được gì:
+   * giữ 1 bản đã init (key schedule tính sẵn) và clone() cho mỗi lần ký, rẻ hơn getInstance + init.
+   */
+  private final Mac prototype;
+
+  public QrTokenSigner(AppProperties props) {
+    AppProperties.Qr cfg = props.getAttendance().getQr();
+    this.rotating = cfg.isRotating();
+    this.slotSeconds = Math.max(cfg.getSlotSeconds(), 1);
+    this.acceptedPreviousSlots = Math.max(cfg.getAcceptedPreviousSlots(), 0);
+
+    String secret = cfg.getSecret();
+    if (secret == null || secret.isBlank()) secret = props.getJwt().getSecret();
+    if (secret == null || secret.isBlank()) secret = "CHANGE_ME_CHANGE_ME_CHANGE_ME_CHANGE_ME_32CHARS";
+    this.key = new SecretKeySpec(secret.trim().getBytes(StandardCharsets.UTF_8), ALGORITHM);
+
+    this.prototype = newMac();
+  }
+
+  public boolean isRotating() {
+    return rotating;
+  }
+
+  public long getSlotSeconds() {
+    return slotSeconds;
+  }
+
+  public long currentSlot() {
+    return System.currentTimeMillis() / 1000L / slotSeconds;
+  }
+
+  /** Số ms còn lại trước khi sang slot kế tiếp (FE dùng để hẹn giờ lấy mã mới). */
+  public long millisUntilNextSlot() {
+    long slotMs = slotSeconds * 1000L;
+    return slotMs - (System.currentTimeMillis() % slotMs);
+  }
+
+  /** Sinh token cho slot hiện tại. */
+  public String issue(Long sessionId, String salt) {
+    long slot = currentSlot();
+    return Long.toString(slot, 36) + "." + encode(sign(sessionId, slot, salt));
+  }
+
+  /** Token có hợp lệ cho session (slot hiện tại hoặc tối đa acceptedPreviousSlots slot trước). */
+  public boolean verify(Long sessionId, String salt, String token) {
+    if (token == null || sessionId == null || salt == null) return false;
+    int dot = token.indexOf('.');
+    if (dot <= 0 || dot == token.length() - 1) return false;
+
+    long slot;
+    byte[] given;
+    try {
+      slot = Long.parseLong(token.substring(0, dot), 36);
+      given = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+
+    long age = currentSlot() - slot;
+    if (age < 0 || age > acceptedPreviousSlots) return false;
+
+    return MessageDigest.isEqual(sign(sessionId, slot, salt), given);
+  }
+
+  private byte[] sign(Long sessionId, long slot, String salt) {
+    Mac mac = mac();
+    mac.update(ByteBuffer.allocate(16).putLong(sessionId).putLong(slot).array());
+    mac.update(salt.getBytes(StandardCharsets.UTF_8));
+    byte[] full = mac.doFinal();
+    byte[] out = new byte[MAC_BYTES];
+    System.arraycopy(full, 0, out, 0, MAC_BYTES);
+    return out;
+  }
+
+  private Mac mac() {
+    try {
+      return (Mac) prototype.clone();
+    } catch (CloneNotSupportedException e) {
+      // Provider không hỗ trợ clone -> tạo mới
+      return newMac();
+    }
+  }
+
+  private Mac newMac() {
+    try {
+      Mac mac = Mac.getInstance(ALGORITHM);
+      mac.init(key);
+      return mac;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Cannot init " + ALGORITHM, e);
+    }
+  }
+
+  private static String encode(byte[] bytes) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+  }
+}
@@ -0,0 +1,195 @@
+package com.service;
+
+import com.exception.ApiException;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.repo.AttendanceExportJdbcRepository;
+import com.repo.AttendanceExportRow;
+import com.util.SecurityUtil;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+/**
+ * Export bản ghi điểm danh thô (CSV / NDJSON) cho script đồng bộ (SIS...), không cần Excel.
+ *
+ * - Kiểm tra quyền trong request; dữ liệu được đọc bằng cursor JDBC và ghi từng dòng thẳng ra response
+ *   -> bộ nhớ không đổi theo số dòng.
+ * - Chỉ gồm bản ghi đã có (không tự sinh dòng ABSENT cho sinh viên chưa điểm danh).
+ */
+@Service
+public class AttendanceRowExportService {
+
+  public enum Format {
+    CSV("text/csv; charset=UTF-8", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String contentType;
+    private final String extension;
+
+    Format(String contentType, String extension) {
+      this.contentType = contentType;
+      this.extension = extension;
+    }
+
+    public static Format parse(String raw) {
+      if (raw == null || raw.isBlank()) return CSV;
+      for (Format f : values()) {
+        if (f.extension.equalsIgnoreCase(raw.trim())) return f;
+      }
+      throw new ApiException(HttpStatus.BAD_REQUEST, "Unsupported format (csv | ndjson)");
+    }
+  }
+
+  /** File export: controller chỉ việc gắn header + trả body. */
+  public record RowExport(String filename, String contentType, StreamingResponseBody body) {}
+
+  private static final String[] COLUMNS = {
+      "sessionId", "sessionTitle", "sessionDate", "classId", "classCode", "className",
+      "studentId", "fullName", "email", "status", "checkInTime"
+  };
+
+  private final TeacherService teacherService;
+  private final AttendanceExportJdbcRepository exportRepo;
+  private final ObjectMapper objectMapper;
+
+  public AttendanceRowExportService(TeacherService teacherService,
+                                    AttendanceExportJdbcRepository exportRepo,
+                                    ObjectMapper objectMapper) {
+    this.teacherService = teacherService;
+    this.exportRepo = exportRepo;
+    this.objectMapper = objectMapper;
+  }
+
+  public RowExport exportSession(Long sessionId, Format format) {
+    teacherService.requireOwnedSession(sessionId);
+    return export("attendance-session-" + sessionId, format, sink -> exportRepo.streamBySession(sessionId, sink));
+  }
+
+  public RowExport exportClass(Long classId, Format format) {
+    teacherService.requireOwnedClass(classId);
+    return export("attendance-class-" + classId, format, sink -> exportRepo.streamByClass(classId, sink));
+  }
+
+  /** Toàn bộ lớp của giảng viên trong khoảng ngày (vd: cả học kỳ). */
+  public RowExport exportTeacher(LocalDate from, LocalDate to, Format format) {
+    var cu = SecurityUtil.currentUser();
+    if (cu == null) throw new ApiException(HttpStatus.UNAUTHORIZED, "Thiếu token / chưa đăng nhập");
+    if (from != null && to != null && from.isAfter(to)) {
+      throw new ApiException(HttpStatus.BAD_REQUEST, "from must be before to");
+    }
+    Long teacherId = cu.getId();
+    String name = "attendance-teacher-" + teacherId
+        + (from != null ? "-from-" + from : "")
+        + (to != null ? "-to-" + to : "");
+    return export(name, format, sink -> exportRepo.streamByTeacher(teacherId, from, to, sink));
+  }
+
+  private RowExport export(String baseName, Format format, Consumer<Consumer<AttendanceExportRow>> source) {
+    StreamingResponseBody body = out -> {
+      try {
+        if (format == Format.CSV) writeCsv(out, source);
+        else writeNdjson(out, source);
+      } catch (UncheckedIOException e) {
+        // Lỗi ghi (client ngắt kết nối) bọc trong callback của cursor
+        throw e.getCause();
+      }
+    };
+    return new RowExport(baseName + "." + format.extension, format.contentType, body);
+  }
+
+  private void writeCsv(OutputStream out, Consumer<Consumer<AttendanceExportRow>> source) throws IOException {
+    Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16 * 1024);
+    w.write(String.join(",", COLUMNS));
+    w.write("\r\n");
+    source.accept(r -> {
+      try {
+        w.write(String.valueOf(r.sessionId()));
+        w.write(',');
+        writeCsvField(w, r.sessionTitle());
+        w.write(',');
+        writeCsvField(w, format(r.sessionDate()));
+        w.write(',');
+        w.write(String.valueOf(r.classId()));
+        w.write(',');
+        writeCsvField(w, r.classCode());
+        w.write(',');
+        writeCsvField(w, r.className());
+        w.write(',');
+        w.write(String.valueOf(r.studentId()));
+        w.write(',');
+        writeCsvField(w, r.fullName());
+        w.write(',');
+        writeCsvField(w, r.email());
+        w.write(',');
+        writeCsvField(w, r.status());
+        w.write(',');
+        writeCsvField(w, format(r.checkInTime()));
+        w.write("\r\n");
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    w.flush();
+  }
+
+  /** RFC 4180: bọc ngoặc kép khi có dấu phẩy / ngoặc kép / xuống dòng. */
+  private static void writeCsvField(Writer w, String v) throws IOException {
+    if (v == null || v.isEmpty()) return;
+    boolean quote = false;
+    for (int i = 0; i < v.length() && !quote; i++) {
+      char ch = v.charAt(i);
+      quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+    }
+    if (!quote) {
+      w.write(v);
+      return;
+    }
+    w.write('"');
+    w.write(v.replace("\"", "\"\""));
+    w.write('"');
+  }
+
+  private void writeNdjson(OutputStream out, Consumer<Consumer<AttendanceExportRow>> source) throws IOException {
+    try (JsonGenerator g = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+      g.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      source.accept(r -> {
+        try {
+          g.writeStartObject();
+          g.writeNumberField(COLUMNS[0], r.sessionId());
+          g.writeStringField(COLUMNS[1], r.sessionTitle());
+          g.writeStringField(COLUMNS[2], format(r.sessionDate()));
+          g.writeNumberField(COLUMNS[3], r.classId());
+          g.writeStringField(COLUMNS[4], r.classCode());
+          g.writeStringField(COLUMNS[5], r.className());
+          g.writeNumberField(COLUMNS[6], r.studentId());
+          g.writeStringField(COLUMNS[7], r.fullName());
+          g.writeStringField(COLUMNS[8], r.email());
+          g.writeStringField(COLUMNS[9], r.status());
+          g.writeStringField(COLUMNS[10], format(r.checkInTime()));
+          g.writeEndObject();
+          g.writeRaw('\n');
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      g.flush();
+    }
+  }
+
+  private static String format(LocalDateTime t) {
+    return t == null ? null : t.toString();
+  }
+}
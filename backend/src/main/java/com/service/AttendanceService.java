@@ -7,35 +7,64 @@ import com.domain.entity.SessionEntity;
 import com.domain.enums.AttendanceStatus;
 import com.domain.enums.SessionStatus;
 import com.exception.ApiException;
+import com.repo.AttendanceInsertRepository;
 import com.repo.AttendanceRepository;
 import com.repo.ClassMemberRepository;
 import com.repo.SessionRepository;
+import com.security.QrTokenSigner;
+import com.util.Geofence;
 import com.util.SecurityUtil;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @Service
 public class AttendanceService {
 
-  // Ngưỡng điểm danh theo GPS (m)
-  private static final double MAX_DISTANCE_METERS = 50.0;
-
   private final SessionRepository sessionRepo;
   private final ClassMemberRepository classMemberRepo;
   private final AttendanceRepository attendanceRepo;
+  private final AttendanceInsertRepository attendanceInsertRepo;
+  private final OpenSessionRegistry openSessions;
+  private final ClassRosterIndex rosterIndex;
+  private final AttendanceWriteBehind writeBehind;
+  private final QrTokenSigner qrSigner;
+  private final UploadService uploadService;
+  private final SessionLiveFeed liveFeed;
+  private final SessionLiveCounters liveCounters;
+  private final ResourceVersions versions;
   private final int onTimeMinutes;
 
   public AttendanceService(SessionRepository sessionRepo,
                            ClassMemberRepository classMemberRepo,
                            AttendanceRepository attendanceRepo,
+                           AttendanceInsertRepository attendanceInsertRepo,
+                           OpenSessionRegistry openSessions,
+                           ClassRosterIndex rosterIndex,
+                           AttendanceWriteBehind writeBehind,
+                           QrTokenSigner qrSigner,
+                           UploadService uploadService,
+                           SessionLiveFeed liveFeed,
+                           SessionLiveCounters liveCounters,
+                           ResourceVersions versions,
                            com.config.AppProperties props) {
     this.sessionRepo = sessionRepo;
     this.classMemberRepo = classMemberRepo;
     this.attendanceRepo = attendanceRepo;
+    this.attendanceInsertRepo = attendanceInsertRepo;
+    this.openSessions = openSessions;
+    this.rosterIndex = rosterIndex;
+    this.writeBehind = writeBehind;
+    this.qrSigner = qrSigner;
+    this.uploadService = uploadService;
+    this.liveFeed = liveFeed;
+    this.liveCounters = liveCounters;
+    this.versions = versions;
     this.onTimeMinutes = props.getAttendance().getOnTimeMinutes();
   }
 
@@ -44,6 +73,17 @@ public class AttendanceService {
     if (cu == null) throw new ApiException(HttpStatus.UNAUTHORIZED, "Missing token");
     return cu.getId();
   }
+  /** Kết quả validate check-in (QR + geofence + thành viên lớp + chưa điểm danh). */
+  private record Accepted(
+      Long sessionId,
+      Long classId,
+      Long studentId,
+      LocalDateTime checkInTime,
+      AttendanceStatus status,
+      Double distanceMeters,
+      Double maxDistanceMeters
+  ) {}
+
   /**
    * Sinh viên điểm danh bằng QR.
    * @param sessionId id buổi học
@@ -52,11 +92,7 @@ public class AttendanceService {
    * @param gpsLng kinh độ hiện tại của sinh viên
    * @param photoUrl url ảnh minh chứng (tuỳ chọn)
    */
-  public Map<String, Object> checkIn(AttendanceDtos.CheckInRequest req) {
-    Long sessionId = req.payload().sessionId();
-    String qrToken = req.payload().qrToken();
-    Double gpsLat = req.gpsLat();
-    Double gpsLng = req.gpsLng();
+  public AttendanceDtos.CheckInResponse checkIn(AttendanceDtos.CheckInRequest req) {
     String photoUrl = req.photoUrl();
 
     // Tránh client gửi base64 cực dài (data:image/...;base64,...) gây quá tải DB.
@@ -65,90 +101,172 @@ public class AttendanceService {
           "Ảnh quá lớn. Vui lòng upload ảnh trước (/api/upload/photo) và gửi lại photoUrl dạng /uploads/...");
     }
 
-    SessionEntity session = sessionRepo.findById(sessionId).orElse(null);
-    if (session == null) throw new ApiException(HttpStatus.NOT_FOUND, "Session not found");
+    Accepted ok = validate(req.payload(), req.gpsLat(), req.gpsLng());
+    return record(ok, req.gpsLat(), req.gpsLng(), photoUrl);
+  }
 
-    if (session.getStatus() != SessionStatus.OPEN) {
-      throw new ApiException(HttpStatus.BAD_REQUEST, "Session is not open");
+  /**
+   * Check-in + ảnh selfie trong 1 request (multipart).
+   * Validate QR/geofence/thành viên lớp TRƯỚC, chỉ lưu ảnh khi check-in được chấp nhận
+   * -> không còn ảnh mồ côi khi bị từ chối. Ghi DB thất bại (trùng) thì xoá ảnh vừa lưu.
+   */
+  public AttendanceDtos.CheckInResponse checkInWithPhoto(AttendanceDtos.CheckInForm form, MultipartFile photo) {
+    uploadService.requirePhoto(photo);
+
+    Accepted ok = validate(form.payload(), form.gpsLat(), form.gpsLng());
+
+    String photoUrl = uploadService.storePhoto(photo);
+    try {
+      return record(ok, form.gpsLat(), form.gpsLng(), photoUrl);
+    } catch (RuntimeException e) {
+      uploadService.deletePhoto(photoUrl);
+      throw e;
     }
+  }
+
+  private Accepted validate(AttendanceDtos.QrPayload payload, Double gpsLat, Double gpsLng) {
+    Long sessionId = payload.sessionId();
+    String qrToken = payload.qrToken();
+    Long studentId = studentId();
 
-    if (session.getQrToken() == null || !session.getQrToken().equals(qrToken)) {
+    OpenSessionRegistry.OpenSession session = loadOpenSession(sessionId);
+
+    // QR xoay vòng: tính lại HMAC theo time-slot; QR tĩnh: so sánh với token lúc mở session
+    boolean validToken = qrSigner.isRotating()
+        ? qrSigner.verify(sessionId, session.qrToken(), qrToken)
+        : session.qrToken().equals(qrToken);
+    if (!validToken) {
       throw new ApiException(HttpStatus.BAD_REQUEST, "Invalid qrToken");
     }
 
     LocalDateTime now = LocalDateTime.now();
-    if (session.getQrTokenExpiresAt() != null && now.isAfter(session.getQrTokenExpiresAt())) {
+    if (session.isExpired(now)) {
       throw new ApiException(HttpStatus.BAD_REQUEST, "Mã QR đã hết hạn, hãy yêu cầu giảng viên mở lại.");
     }
 
-    // distance check (if teacher gps exists)
+    // geofence check (if teacher gps exists)
     Double distanceMeters = null;
-    if (session.getTeacherLat() != null && session.getTeacherLng() != null
-        && gpsLat != null && gpsLng != null) {
-      double dist = distanceInMeters(
-          session.getTeacherLat().doubleValue(),
-          session.getTeacherLng().doubleValue(),
-          gpsLat,
-          gpsLng
-      );
-      distanceMeters = dist;
-      if (dist > MAX_DISTANCE_METERS) {
+    Geofence fence = session.geofence();
+    if (fence != null && gpsLat != null && gpsLng != null) {
+      Geofence.Result r = fence.check(gpsLat, gpsLng);
+      distanceMeters = r.distanceMeters();
+      if (!r.inside()) {
+        // Đa giác không có "bán kính tối đa" -> không trả maxDistanceMeters (radius không tham gia kiểm tra)
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("distanceMeters", Math.round(r.distanceMeters()));
+        if (!fence.hasPolygon()) details.put("maxDistanceMeters", Math.round(fence.getRadiusMeters()));
         throw new ApiException(
             HttpStatus.BAD_REQUEST,
-            "Bạn đang ở quá xa vị trí lớp học, không thể điểm danh (≈ " + Math.round(dist) + " m).",
-            Map.of(
-                "distanceMeters", Math.round(dist),
-                "maxDistanceMeters", Math.round(MAX_DISTANCE_METERS)
-            )
+            "Bạn đang ở quá xa vị trí lớp học, không thể điểm danh (≈ " + Math.round(r.distanceMeters()) + " m).",
+            details
         );
       }
     }
 
     // class membership
-    if (!classMemberRepo.existsByClassIdAndStudentId(session.getClassId(), studentId())) {
+    if (!rosterIndex.isMember(session.classId(), studentId)) {
       throw new ApiException(HttpStatus.FORBIDDEN, "Student is not in this class");
     }
 
-    // duplicate
-    if (attendanceRepo.findBySessionIdAndStudentId(sessionId, studentId()).isPresent()) {
+    // duplicate: đường ghi đồng bộ dựa vào ON CONFLICT của uq_session_student (không cần SELECT trước).
+    // Write-behind thì phải kiểm tra trước vì response trả về trước khi ghi DB.
+    if (writeBehind.isEnabled()
+        && (writeBehind.isPending(sessionId, studentId)
+            || attendanceRepo.findBySessionIdAndStudentId(sessionId, studentId).isPresent())) {
       throw new ApiException(HttpStatus.BAD_REQUEST, "Already checked in");
     }
 
-    LocalDateTime onTimeBoundary = session.getSessionDate().plusMinutes(onTimeMinutes);
+    LocalDateTime onTimeBoundary = session.sessionDate().plusMinutes(onTimeMinutes);
     AttendanceStatus status = now.isAfter(onTimeBoundary) ? AttendanceStatus.LATE : AttendanceStatus.ON_TIME;
 
-        // Tạo bản ghi điểm danh (không dùng Lombok)
+    Double maxDistance = fence == null ? Double.valueOf(openSessions.getDefaultRadiusMeters())
+        : fence.hasPolygon() ? null : Double.valueOf(fence.getRadiusMeters());
+    return new Accepted(sessionId, session.classId(), studentId, now, status, distanceMeters, maxDistance);
+  }
+
+  private AttendanceDtos.CheckInResponse record(Accepted ok, Double gpsLat, Double gpsLng, String photoUrl) {
+    // Tạo bản ghi điểm danh (không dùng Lombok)
     Attendance att = new Attendance();
-    att.setSessionId(sessionId);
-    att.setStudentId(studentId());
-    att.setCheckInTime(now);
+    att.setSessionId(ok.sessionId());
+    att.setStudentId(ok.studentId());
+    att.setCheckInTime(ok.checkInTime());
     att.setGpsLat(BigDecimal.valueOf(gpsLat));
     att.setGpsLng(BigDecimal.valueOf(gpsLng));
     att.setPhotoUrl(photoUrl);
-    att.setStatus(status);
+    att.setStatus(ok.status());
+
+    // Write-behind: trả kết quả ngay, bản ghi được ghi theo batch (id = null trong response).
+    // Live feed / bộ đếm chỉ cập nhật sau khi flush ghi thành công (AttendanceWriteBehind), nên response
+    // chỉ báo "đã tiếp nhận". Pipeline tắt hoặc hàng đợi đầy -> ghi đồng bộ bằng 1 câu INSERT ... ON CONFLICT DO NOTHING.
+    if (writeBehind.enqueue(att, ok.classId())) {
+      return response("Check-in accepted", toCheckInAttendance(att), ok);
+    }
 
-att = attendanceRepo.save(att);
+    Long id = attendanceInsertRepo.insertIfAbsent(att);
+    if (id == null) throw new ApiException(HttpStatus.BAD_REQUEST, "Already checked in");
+    att.setId(id);
+    versions.attendanceChanged(ok.classId(), ok.sessionId());
+
+    AttendanceDtos.CheckInAttendance accepted = toCheckInAttendance(att);
+    liveCounters.recorded(accepted.sessionId(), accepted.status());
+    liveFeed.publish(accepted);
+    return response("Check-in success", accepted, ok);
+  }
 
-    return Map.of(
-        "message", "Check-in success",
-        "attendance", att,
-        "distanceMeters", distanceMeters == null ? null : Math.round(distanceMeters),
-        "maxDistanceMeters", Math.round(MAX_DISTANCE_METERS)
+  private static AttendanceDtos.CheckInResponse response(String message,
+                                                         AttendanceDtos.CheckInAttendance attendance,
+                                                         Accepted ok) {
+    return new AttendanceDtos.CheckInResponse(
+        message,
+        attendance,
+        ok.distanceMeters() == null ? null : Math.round(ok.distanceMeters()),
+        ok.maxDistanceMeters() == null ? null : Math.round(ok.maxDistanceMeters())
     );
   }
 
-  private static double toRad(double deg) {
-    return deg * Math.PI / 180.0;
+  /** Dạng gửi cho client (response check-in, live feed): không kèm GPS. */
+  static AttendanceDtos.CheckInAttendance toCheckInAttendance(Attendance att) {
+    return new AttendanceDtos.CheckInAttendance(
+        att.getId(),
+        att.getSessionId(),
+        att.getStudentId(),
+        att.getCheckInTime(),
+        att.getPhotoUrl(),
+        att.getStatus()
+    );
   }
 
-  private static double distanceInMeters(double lat1, double lng1, double lat2, double lng2) {
-    double R = 6371000.0;
-    double dLat = toRad(lat2 - lat1);
-    double dLng = toRad(lng2 - lng1);
-    double a =
-        Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-            Math.cos(toRad(lat1)) * Math.cos(toRad(lat2)) *
-                Math.sin(dLng / 2) * Math.sin(dLng / 2);
-    return R * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+  /**
+   * Lấy snapshot session đang mở: ưu tiên registry in-memory,
+   * chỉ đọc DB khi registry chưa có (vd: sau khi restart) rồi nạp lại vào registry.
+   */
+  private OpenSessionRegistry.OpenSession loadOpenSession(Long sessionId) {
+    OpenSessionRegistry.OpenSession cached = openSessions.get(sessionId);
+    if (cached != null) return cached;
+
+    // Lấy epoch TRƯỚC khi đọc DB: đóng / mở lại xen giữa thì snapshot đọc được không được cache
+    long epoch = openSessions.epoch();
+    SessionEntity session = sessionRepo.findById(sessionId).orElse(null);
+    if (session == null) throw new ApiException(HttpStatus.NOT_FOUND, "Session not found");
+
+    if (session.getStatus() != SessionStatus.OPEN) {
+      throw new ApiException(HttpStatus.BAD_REQUEST, "Session is not open");
+    }
+
+    if (session.getQrToken() == null) {
+      throw new ApiException(HttpStatus.BAD_REQUEST, "Invalid qrToken");
+    }
+
+    LocalDateTime expiresAt = session.getQrTokenExpiresAt();
+    if (expiresAt != null && LocalDateTime.now().isAfter(expiresAt)) {
+      throw new ApiException(HttpStatus.BAD_REQUEST, "Mã QR đã hết hạn, hãy yêu cầu giảng viên mở lại.");
+    }
+
+    OpenSessionRegistry.OpenSession registered = openSessions.registerLoaded(session, epoch);
+    if (registered == null) {
+      // Vừa hết hạn giữa 2 lần kiểm tra
+      throw new ApiException(HttpStatus.BAD_REQUEST, "Mã QR đã hết hạn, hãy yêu cầu giảng viên mở lại.");
+    }
+    return registered;
   }
 }
@@ -0,0 +1,67 @@
+package com.service;
+
+import com.repo.AttendanceSummaryJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Tính lại bảng attendance_summary từ attendance để sửa chênh lệch (nếu có).
+ *
+ * - Chạy theo lịch app.attendance.summary.rebuild-cron ("-" để tắt).
+ * - Bỏ qua lớp đang có buổi học OPEN: check-in đồng thời có thể bị ghi đè bởi số liệu tính lại.
+ * - Khởi động lần đầu (bảng tổng hợp rỗng nhưng đã có dữ liệu cũ) -> backfill tất cả các lớp.
+ * Mỗi lớp được tính lại trong 1 transaction riêng.
+ */
+@Component
+public class AttendanceSummaryRebuildJob {
+
+  private static final Logger log = LoggerFactory.getLogger(AttendanceSummaryRebuildJob.class);
+
+  private final AttendanceSummaryJdbcRepository summaryRepo;
+  private final TransactionTemplate tx;
+
+  public AttendanceSummaryRebuildJob(AttendanceSummaryJdbcRepository summaryRepo, TransactionTemplate tx) {
+    this.summaryRepo = summaryRepo;
+    this.tx = tx;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void backfillIfEmpty() {
+    try {
+      if (!summaryRepo.isEmpty()) return;
+      int changed = rebuild(summaryRepo.findAllClassIds());
+      if (changed > 0) log.info("Attendance summary backfilled ({} rows)", changed);
+    } catch (RuntimeException e) {
+      log.warn("Attendance summary backfill failed: {}", e.getMessage());
+    }
+  }
+
+  @Scheduled(cron = "${app.attendance.summary.rebuild-cron}", zone = "Asia/Ho_Chi_Minh")
+  public void rebuildClosedClasses() {
+    int orphans = summaryRepo.deleteOrphans();
+    int changed = rebuild(summaryRepo.findClassIdsWithoutOpenSession());
+    if (changed + orphans > 0) {
+      log.info("Attendance summary drift repaired: {} rows changed, {} orphan rows removed", changed, orphans);
+    }
+  }
+
+  private int rebuild(List<Long> classIds) {
+    int changed = 0;
+    for (Long classId : classIds) {
+      try {
+        Integer n = tx.execute(status -> summaryRepo.rebuildClass(classId));
+        if (n != null) changed += n;
+      } catch (RuntimeException e) {
+        log.warn("Attendance summary rebuild failed for class {}: {}", classId, e.getMessage());
+      }
+    }
+    return changed;
+  }
+}
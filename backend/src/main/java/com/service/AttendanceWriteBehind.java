@@ -0,0 +1,277 @@
+package com.service;
+
+import com.api.dto.AttendanceDtos;
+import com.config.AppProperties;
+import com.domain.entity.Attendance;
+import com.exception.ApiException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.repo.AttendanceInsertRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipeline ghi điểm danh kiểu write-behind (tuỳ chọn, app.attendance.write-behind.enabled).
+ *
+ * Check-in vẫn validate đồng bộ và trả kết quả ngay cho sinh viên, nhưng bản ghi Attendance
+ * được đưa vào hàng đợi có giới hạn. 1 thread nền gom hàng đợi và ghi bằng 1 câu
+ * INSERT nhiều dòng mỗi flushIntervalMs hoặc mỗi batchSize bản ghi (cái nào đến trước).
+ *
+ * - Attendance dùng IDENTITY nên Hibernate không batch được -> ghi qua AttendanceInsertRepository.
+ * - ON CONFLICT DO NOTHING dựa trên uq_session_student: flush lại/đua điều kiện không tạo bản trùng.
+ * - Hàng đợi đầy -> enqueue trả false, caller tự save đồng bộ (không bao giờ chặn request).
+ * - Live feed / bộ đếm / ETag chỉ được cập nhật cho dòng thực sự đã ghi (sau flush), không phải lúc enqueue.
+ * - Dòng ghi lỗi được đưa lại hàng đợi (tối đa maxAttempts lần, flush sau lỗi chờ lâu dần);
+ *   hết lượt thử -> ghi vào file dead-letter (NDJSON) để nhập lại bằng tay, không bao giờ bỏ im lặng.
+ * - Dòng thuộc session đã bị xoá / sinh viên đã bị xoá khỏi lớp bị INSERT bỏ qua, không tạo bản ghi
+ *   mồ côi hay dựng lại dòng tổng hợp vừa xoá.
+ * - Khi tắt ứng dụng, hàng đợi được flush hết trước khi dừng.
+ */
+@Component
+public class AttendanceWriteBehind {
+
+  private static final Logger log = LoggerFactory.getLogger(AttendanceWriteBehind.class);
+
+  /** Thời gian chờ tối đa giữa 2 lần flush khi DB liên tục lỗi. */
+  private static final long MAX_BACKOFF_MS = 5_000;
+
+  private final AttendanceInsertRepository insertRepo;
+  private final ResourceVersions versions;
+  private final SessionLiveFeed liveFeed;
+  private final SessionLiveCounters liveCounters;
+  private final ObjectMapper objectMapper;
+  private final boolean enabled;
+  private final long flushIntervalMs;
+  private final int batchSize;
+  private final int maxAttempts;
+  private final Path deadLetterFile;
+  private final BlockingQueue<Queued> queue;
+
+  /**
+   * Bản ghi chờ ghi + lớp của nó (để tăng version CLASS_REPORT sau flush, kể cả khi session đã đóng)
+   * + số lần đã ghi lỗi.
+   */
+  private record Queued(Attendance attendance, Long classId, int failures) {
+    Queued retry() {
+      return new Queued(attendance, classId, failures + 1);
+    }
+  }
+
+  /** (sessionId, studentId) đang chờ ghi: dùng để chặn check-in trùng trước khi flush. */
+  private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+  private final Thread worker;
+  private volatile boolean running;
+  /** Số flush lỗi liên tiếp (chỉ worker đọc/ghi). */
+  private int consecutiveFailures;
+
+  public AttendanceWriteBehind(AttendanceInsertRepository insertRepo,
+                               ResourceVersions versions,
+                               SessionLiveFeed liveFeed,
+                               SessionLiveCounters liveCounters,
+                               ObjectMapper objectMapper,
+                               AppProperties props) {
+    AppProperties.WriteBehind cfg = props.getAttendance().getWriteBehind();
+    this.insertRepo = insertRepo;
+    this.versions = versions;
+    this.liveFeed = liveFeed;
+    this.liveCounters = liveCounters;
+    this.objectMapper = objectMapper;
+    this.enabled = cfg.isEnabled();
+    this.flushIntervalMs = Math.max(cfg.getFlushIntervalMs(), 10);
+    this.batchSize = Math.max(cfg.getBatchSize(), 1);
+    this.maxAttempts = Math.max(cfg.getMaxAttempts(), 1);
+    this.deadLetterFile = Paths.get(cfg.getDeadLetterFile()).toAbsolutePath().normalize();
+    this.queue = new ArrayBlockingQueue<>(Math.max(cfg.getCapacity(), this.batchSize));
+
+    if (enabled) {
+      running = true;
+      worker = new Thread(this::runLoop, "attendance-write-behind");
+      worker.setDaemon(true);
+      worker.start();
+    } else {
+      worker = null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Sinh viên đã có bản ghi đang chờ flush cho session này chưa. */
+  public boolean isPending(Long sessionId, Long studentId) {
+    return enabled && pending.contains(key(sessionId, studentId));
+  }
+
+  /**
+   * Đưa bản ghi vào hàng đợi.
+   * @param classId lớp của buổi học (dùng khi tăng version sau flush)
+   * @return false nếu pipeline tắt hoặc hàng đợi đầy (caller tự save đồng bộ)
+   * @throws ApiException nếu sinh viên đã có bản ghi đang chờ (double-tap)
+   */
+  public boolean enqueue(Attendance a, Long classId) {
+    if (!enabled || !running) return false;
+    String k = key(a.getSessionId(), a.getStudentId());
+    if (!pending.add(k)) throw new ApiException(HttpStatus.BAD_REQUEST, "Already checked in");
+    if (!queue.offer(new Queued(a, classId, 0))) {
+      pending.remove(k);
+      return false;
+    }
+    return true;
+  }
+
+  private void runLoop() {
+    List<Queued> batch = new ArrayList<>(batchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        Queued first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null) continue;
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) break;
+          Queued next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+          if (next == null) break;
+          batch.add(next);
+        }
+      } catch (InterruptedException e) {
+        // Không dừng giữa chừng: vòng lặp chỉ kết thúc khi running=false và hàng đợi rỗng
+        Thread.interrupted();
+      }
+
+      if (!batch.isEmpty()) {
+        flush(batch);
+        batch.clear();
+        backoff();
+      }
+    }
+  }
+
+  /** DB lỗi liên tiếp -> giãn nhịp flush (x2 mỗi lần, tối đa MAX_BACKOFF_MS) thay vì đốt hết lượt thử. */
+  private void backoff() {
+    if (consecutiveFailures == 0 || !running) return;
+    long ms = Math.min(flushIntervalMs << Math.min(consecutiveFailures, 16), MAX_BACKOFF_MS);
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+      Thread.interrupted();
+    }
+  }
+
+  private void flush(List<Queued> queued) {
+    List<Attendance> inserted = new ArrayList<>(queued.size());
+    List<Queued> failed = new ArrayList<>();
+    try {
+      inserted.addAll(insertRepo.insertAllIfAbsent(queued.stream().map(Queued::attendance).toList()));
+    } catch (Exception ex) {
+      // Lỗi cả batch (vd 1 dòng sai kiểu dữ liệu) -> thử lại từng dòng để không kéo theo các dòng hợp lệ
+      log.warn("Batch insert of {} attendance rows failed, retrying row by row", queued.size(), ex);
+      for (Queued q : queued) {
+        try {
+          inserted.addAll(insertRepo.insertAllIfAbsent(List.of(q.attendance())));
+        } catch (Exception rowEx) {
+          // Không in stack trace từng dòng: DB mất kết nối thì cả batch lỗi cùng 1 nguyên nhân (đã log ở trên)
+          log.warn("Attendance row session={} student={} failed (attempt {}/{}): {}",
+              q.attendance().getSessionId(), q.attendance().getStudentId(), q.failures() + 1, maxAttempts,
+              rowEx.toString());
+          failed.add(q.retry());
+        }
+      }
+    }
+    consecutiveFailures = failed.isEmpty() ? 0 : consecutiveFailures + 1;
+
+    Set<Attendance> retrying = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Queued q : failed) {
+      // Còn lượt thử và còn chỗ -> giữ khoá pending, ghi lại ở lần flush sau
+      if (q.failures() < maxAttempts && queue.offer(q)) {
+        retrying.add(q.attendance());
+      } else {
+        deadLetter(q);
+      }
+    }
+
+    // Bỏ khoá pending của dòng đã xong (đã ghi, trùng, session đã xoá, hoặc dead-letter)
+    for (Queued q : queued) {
+      Attendance a = q.attendance();
+      if (!retrying.contains(a)) pending.remove(key(a.getSessionId(), a.getStudentId()));
+    }
+
+    if (inserted.isEmpty()) return;
+    Map<Long, Long> classBySession = new HashMap<>();
+    for (Queued q : queued) classBySession.putIfAbsent(q.attendance().getSessionId(), q.classId());
+    for (Attendance a : inserted) {
+      AttendanceDtos.CheckInAttendance event = AttendanceService.toCheckInAttendance(a);
+      liveCounters.recorded(event.sessionId(), event.status());
+      liveFeed.publish(event);
+    }
+    // ETag chỉ đổi khi bản ghi đã nằm trong DB; lớp đi kèm bản ghi (session có thể đã đóng lúc flush)
+    inserted.stream().map(Attendance::getSessionId).distinct()
+        .forEach(sessionId -> versions.attendanceChanged(classBySession.get(sessionId), sessionId));
+  }
+
+  /** Ghi 1 dòng NDJSON vào file dead-letter (chỉ worker gọi nên không cần khoá). */
+  private void deadLetter(Queued q) {
+    Attendance a = q.attendance();
+    log.error("Attendance row session={} student={} moved to dead-letter file {} after {} failed attempts",
+        a.getSessionId(), a.getStudentId(), deadLetterFile, q.failures());
+    Map<String, Object> row = new LinkedHashMap<>();
+    row.put("classId", q.classId());
+    row.put("sessionId", a.getSessionId());
+    row.put("studentId", a.getStudentId());
+    row.put("checkInTime", a.getCheckInTime());
+    row.put("gpsLat", a.getGpsLat());
+    row.put("gpsLng", a.getGpsLng());
+    row.put("photoUrl", a.getPhotoUrl());
+    row.put("status", a.getStatus());
+    row.put("failedAt", LocalDateTime.now());
+    try {
+      Files.createDirectories(deadLetterFile.getParent());
+      Files.writeString(deadLetterFile, objectMapper.writeValueAsString(row) + "\n", StandardCharsets.UTF_8,
+          StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      // Không ghi được file: log là nơi duy nhất còn lại
+      log.error("Could not write attendance dead-letter {}", row, e);
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (worker == null) return;
+    // Không interrupt worker: đang ghi JDBC mà bị ngắt có thể làm hỏng batch.
+    // Vòng lặp tự thoát sau tối đa flushIntervalMs khi hàng đợi đã rỗng.
+    running = false;
+    try {
+      worker.join(TimeUnit.SECONDS.toMillis(10));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static String key(Long sessionId, Long studentId) {
+    return sessionId + ":" + studentId;
+  }
+}
@@ -0,0 +1,170 @@
+package com.service;
+
+import com.config.AppProperties;
+import com.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Admission control cho check-in.
+ *
+ * Khi 1 lớp đông mở QR, hàng trăm request check-in đến cùng lúc. Nếu không giới hạn,
+ * chúng chiếm hết thread Tomcat + connection Hikari và làm nghẽn các API khác của giảng viên.
+ *
+ * - Giới hạn đồng thời toàn node (maxConcurrent) và theo buổi học (maxConcurrentPerSession).
+ *   Mỗi buổi học có semaphore riêng, chỉ tồn tại khi buổi đó có request đang chạy / đang chờ
+ *   (đếm tham chiếu, hết request thì xoá) -> không phình map, kể cả khi client gửi sessionId bừa.
+ * - Hết chỗ -> xếp hàng tối đa maxQueue request, mỗi request chờ tối đa maxWaitMs.
+ *   Request chờ chiếm thread đang xử lý nó: với platform thread (VIRTUAL_THREADS_ENABLED=false) hàng đợi
+ *   bị giới hạn thêm ở 1/4 server.tomcat.threads.max để phần còn lại của pool vẫn phục vụ API khác.
+ * - Hàng đầy / chờ quá lâu -> 429 + Retry-After ngay (không giữ thread).
+ * - Metrics: checkin.admission.{admitted,queued,shed} + gauge in_flight/waiting.
+ */
+@Component
+public class CheckInAdmissionControl {
+
+  private static final Logger log = LoggerFactory.getLogger(CheckInAdmissionControl.class);
+
+  /** Semaphore của 1 buổi học + số request đang dùng nó (sửa trong compute của map). */
+  private static final class SessionSlot {
+    final Semaphore permits;
+    int users;
+
+    SessionSlot(int permits) {
+      this.permits = new Semaphore(permits);
+    }
+  }
+
+  private final boolean enabled;
+  private final int maxQueue;
+  private final long maxWaitNanos;
+  private final long retryAfterSeconds;
+
+  private final Semaphore global;
+  private final int perSessionPermits;
+  private final ConcurrentMap<Long, SessionSlot> perSession = new ConcurrentHashMap<>();
+
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private final Counter admitted;
+  private final Counter queued;
+  private final Counter shed;
+
+  public CheckInAdmissionControl(AppProperties props, MeterRegistry meters, Environment env) {
+    AppProperties.Admission cfg = props.getAttendance().getAdmission();
+    this.enabled = cfg.isEnabled();
+    this.maxQueue = queueLimit(Math.max(cfg.getMaxQueue(), 0), env);
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(cfg.getMaxWaitMs(), 0));
+    this.retryAfterSeconds = Math.max(cfg.getRetryAfterSeconds(), 1);
+
+    this.global = new Semaphore(Math.max(cfg.getMaxConcurrent(), 1));
+    this.perSessionPermits = Math.max(cfg.getMaxConcurrentPerSession(), 1);
+
+    this.admitted = Counter.builder("checkin.admission.admitted")
+        .description("Check-in requests admitted").register(meters);
+    this.queued = Counter.builder("checkin.admission.queued")
+        .description("Check-in requests that had to wait for a slot").register(meters);
+    this.shed = Counter.builder("checkin.admission.shed")
+        .description("Check-in requests rejected with 429").register(meters);
+    Gauge.builder("checkin.admission.in_flight", inFlight, AtomicInteger::get).register(meters);
+    Gauge.builder("checkin.admission.waiting", waiting, AtomicInteger::get).register(meters);
+  }
+
+  /** Platform thread: request chờ giữ thread Tomcat -> không cho hàng đợi vượt 1/4 pool. */
+  private static int queueLimit(int configured, Environment env) {
+    if (Threading.VIRTUAL.isActive(env)) return configured;
+    int tomcatThreads = env.getProperty("server.tomcat.threads.max", Integer.class, 200);
+    int limit = Math.min(configured, tomcatThreads / 4);
+    if (limit < configured) {
+      log.info("Check-in admission queue capped at {} (platform threads, server.tomcat.threads.max={})",
+          limit, tomcatThreads);
+    }
+    return limit;
+  }
+
+  /** Chạy action nếu còn chỗ, ngược lại ném TooManyRequestsException (429). */
+  public <T> T execute(Long sessionId, Supplier<T> action) {
+    if (!enabled) return action.get();
+
+    Long key = sessionId == null ? 0L : sessionId;
+    SessionSlot slot = perSession.compute(key, (k, cur) -> {
+      SessionSlot s = cur != null ? cur : new SessionSlot(perSessionPermits);
+      s.users++;
+      return s;
+    });
+    try {
+      acquire(slot.permits);
+      try {
+        return action.get();
+      } finally {
+        inFlight.decrementAndGet();
+        global.release();
+        slot.permits.release();
+      }
+    } finally {
+      // Request cuối cùng của buổi học rời đi -> bỏ semaphore (buổi đã đóng sẽ không còn entry)
+      perSession.computeIfPresent(key, (k, cur) -> --cur.users == 0 ? null : cur);
+    }
+  }
+
+  private void acquire(Semaphore session) {
+    // Fast path: còn chỗ thì vào luôn, không tính là xếp hàng
+    if (session.tryAcquire()) {
+      if (global.tryAcquire()) {
+        admit();
+        return;
+      }
+      session.release();
+    }
+
+    if (waiting.incrementAndGet() > maxQueue) {
+      waiting.decrementAndGet();
+      throw reject();
+    }
+    queued.increment();
+
+    boolean gotSession = false;
+    try {
+      long deadline = System.nanoTime() + maxWaitNanos;
+      gotSession = session.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+      if (gotSession && global.tryAcquire(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS)) {
+        admit();
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      waiting.decrementAndGet();
+    }
+
+    if (gotSession) session.release();
+    throw reject();
+  }
+
+  private void admit() {
+    inFlight.incrementAndGet();
+    admitted.increment();
+  }
+
+  private TooManyRequestsException reject() {
+    shed.increment();
+    return new TooManyRequestsException(
+        "Hệ thống đang quá tải, vui lòng thử lại sau " + retryAfterSeconds + " giây.",
+        retryAfterSeconds
+    );
+  }
+}
@@ -0,0 +1,183 @@
+package com.service;
+
+import com.domain.entity.ClassEntity;
+import com.domain.entity.SessionEntity;
+import com.repo.StudentAttendanceCounts;
+import com.util.AttendanceMatrix;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Ghi báo cáo chuyên cần tổng hợp theo lớp ra Excel (.xlsx) dạng streaming.
+ *
+ * - SXSSF: chỉ giữ {@link #WINDOW_ROWS} dòng trong RAM, phần còn lại đã flush ra file tạm (nén).
+ * - Độ rộng cột tính trước từ dữ liệu đã có (không dùng autoSizeColumn: phải đo lại mọi ô, rất chậm
+ *   và không dùng được với dòng đã flush).
+ * - Ghi thẳng ra OutputStream (response hoặc file của export job), không gom vào byte[].
+ *
+ * Dữ liệu ({@link ClassSheet}) được nạp sẵn (kiểm tra quyền + truy vấn) trước khi bắt đầu ghi.
+ */
+@Component
+public class ClassAttendanceXlsxWriter {
+
+  private static final int WINDOW_ROWS = 100;
+  private static final int MAX_COLUMN_CHARS = 60;
+  private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("dd/MM");
+
+  /**
+   * Dữ liệu của 1 lần export.
+   * matrix: hàng theo thứ tự students, cột theo thứ tự sessions; không có bản ghi = vắng.
+   */
+  public record ClassSheet(
+      ClassEntity cls,
+      List<SessionEntity> sessions,
+      List<StudentAttendanceCounts> students,
+      AttendanceMatrix matrix
+  ) {}
+
+  public void write(ClassSheet data, OutputStream out) throws IOException {
+    write(data, out, rows -> {});
+  }
+
+  /** @param progress nhận số dòng sinh viên đã ghi (export job dùng để báo tiến độ) */
+  public void write(ClassSheet data, OutputStream out, IntConsumer progress) throws IOException {
+    List<SessionEntity> sessions = data.sessions();
+    List<StudentAttendanceCounts> students = data.students();
+    AttendanceMatrix matrix = data.matrix();
+
+    SXSSFWorkbook wb = new SXSSFWorkbook(WINDOW_ROWS);
+    wb.setCompressTempFiles(true);
+    try {
+      SXSSFSheet sh = wb.createSheet("Summary");
+      CellStyle headerStyle = headerStyle(wb);
+
+      // Header: cột cố định + từng buổi học + tổng
+      String[] labels = new String[3 + sessions.size() + 3];
+      int c = 0;
+      labels[c++] = "Student ID";
+      labels[c++] = "Họ tên";
+      labels[c++] = "Email";
+      int idx = 1;
+      for (SessionEntity s : sessions) {
+        labels[c++] = "Buổi " + (idx++) + " (" + s.getSessionDate().format(DAY) + ") - " + s.getTitle();
+      }
+      labels[c++] = "Có mặt";
+      labels[c++] = "Vắng";
+      labels[c] = "Tỷ lệ %";
+
+      setColumnWidths(sh, labels, students);
+
+      int r = 0;
+
+      // Meta
+      Row meta1 = sh.createRow(r++);
+      meta1.createCell(0).setCellValue("Lớp:");
+      meta1.createCell(1).setCellValue(data.cls().getClassName() + " (" + data.cls().getCode() + ")");
+      Row meta2 = sh.createRow(r++);
+      meta2.createCell(0).setCellValue("Số buổi:");
+      meta2.createCell(1).setCellValue(sessions.size());
+      Row meta3 = sh.createRow(r++);
+      meta3.createCell(0).setCellValue("Xuất lúc:");
+      meta3.createCell(1).setCellValue(LocalDateTime.now().toString());
+
+      r++; // blank
+
+      Row header = sh.createRow(r++);
+      for (int i = 0; i < labels.length; i++) {
+        Cell h = header.createCell(i);
+        h.setCellValue(labels[i]);
+        h.setCellStyle(headerStyle);
+      }
+
+      // Data rows
+      for (int i = 0; i < students.size(); i++) {
+        StudentAttendanceCounts row = students.get(i); // hàng i của ma trận
+        Row rr = sh.createRow(r++);
+        int cc = 0;
+        rr.createCell(cc++).setCellValue(row.studentId());
+        rr.createCell(cc++).setCellValue(row.fullName());
+        rr.createCell(cc++).setCellValue(row.email());
+
+        for (int col = 0; col < matrix.cols(); col++) {
+          rr.createCell(cc++).setCellValue(symbol(matrix, i, col));
+        }
+
+        // Tổng đếm bit trên chính các ô vừa ghi: có mặt = đúng giờ + trễ
+        long present = matrix.presentCount(i);
+        long absent = Math.max(sessions.size() - present, 0);
+
+        rr.createCell(cc++).setCellValue(present);
+        rr.createCell(cc++).setCellValue(absent);
+
+        double rate = sessions.isEmpty() ? 0.0 : (present * 100.0 / sessions.size());
+        rr.createCell(cc).setCellValue(Math.round(rate * 100.0) / 100.0);
+        progress.accept(i + 1);
+      }
+
+      // legend
+      r++;
+      Row legend = sh.createRow(r);
+      legend.createCell(0).setCellValue("Chú thích:");
+      legend.createCell(1).setCellValue("P = Có mặt, L = Đi trễ, A = Vắng");
+
+      wb.write(out);
+      out.flush();
+    } finally {
+      // POI 5.x: close() xoá luôn file tạm của các dòng đã flush
+      wb.close();
+    }
+  }
+
+  /** Mặc định không có record => ABSENT. */
+  private static String symbol(AttendanceMatrix matrix, int row, int col) {
+    if (!matrix.isPresent(row, col)) return "A";
+    if (matrix.isLate(row, col)) return "L";
+    return "P"; // ON_TIME
+  }
+
+  /** Độ rộng cột (đơn vị 1/256 ký tự) theo nội dung dài nhất đã biết trước. */
+  private static void setColumnWidths(SXSSFSheet sh, String[] labels, List<StudentAttendanceCounts> students) {
+    int[] chars = new int[labels.length];
+    for (int i = 0; i < labels.length; i++) chars[i] = labels[i].length();
+
+    // Meta dùng cột 0-1
+    chars[0] = Math.max(chars[0], "Số buổi:".length());
+    for (StudentAttendanceCounts s : students) {
+      chars[0] = Math.max(chars[0], String.valueOf(s.studentId()).length());
+      chars[1] = Math.max(chars[1], length(s.fullName()));
+      chars[2] = Math.max(chars[2], length(s.email()));
+    }
+    // Ô buổi học chỉ có 1 ký tự, ô tổng là số nhỏ -> độ rộng theo header là đủ
+
+    for (int i = 0; i < chars.length; i++) {
+      sh.setColumnWidth(i, (Math.min(chars[i], MAX_COLUMN_CHARS) + 2) * 256);
+    }
+  }
+
+  private static int length(String s) {
+    return s == null ? 0 : s.length();
+  }
+
+  private static CellStyle headerStyle(Workbook wb) {
+    Font headerFont = wb.createFont();
+    headerFont.setBold(true);
+    CellStyle headerStyle = wb.createCellStyle();
+    headerStyle.setFont(headerFont);
+    headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+    headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+    headerStyle.setBorderBottom(BorderStyle.THIN);
+    headerStyle.setBorderTop(BorderStyle.THIN);
+    headerStyle.setBorderLeft(BorderStyle.THIN);
+    headerStyle.setBorderRight(BorderStyle.THIN);
+    return headerStyle;
+  }
+}
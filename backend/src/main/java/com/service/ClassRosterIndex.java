@@ -0,0 +1,123 @@
+package com.service;
+
+import com.repo.ClassMemberRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index thành viên lớp in-memory: classId -> mảng studentId đã sắp xếp (long[]).
+ *
+ * - Nạp lười (lazy) theo từng lớp ở lần kiểm tra đầu tiên (1 query).
+ * - Các lần sau kiểm tra bằng binary search, không cần SQL.
+ * - joinClass / removeMember cập nhật index sau khi DB đã ghi xong; deleteClass evict cả lớp.
+ *
+ * Mảng được thay thế nguyên khối (copy-on-write) nên reader không cần lock.
+ *
+ * classId đến từ request (vd: lịch sử điểm danh của sinh viên) -> không cache lớp rỗng / không tồn tại
+ * (dò id bừa không làm phình map), và giới hạn số lớp giữ trong RAM ở {@link #MAX_CLASSES}.
+ */
+@Component
+public class ClassRosterIndex {
+
+  /** Số lớp tối đa giữ roster trong RAM; vượt quá thì bỏ bớt 1 lớp bất kỳ (lần sau nạp lại). */
+  static final int MAX_CLASSES = 10_000;
+
+  private final ClassMemberRepository classMemberRepo;
+  private final ConcurrentMap<Long, long[]> rosters = new ConcurrentHashMap<>();
+
+  /**
+   * Đếm số lần roster thay đổi. Loader chỉ cache kết quả nếu không có thay đổi nào
+   * xảy ra trong lúc đang query (tránh ghi đè index bằng snapshot cũ).
+   */
+  private final AtomicLong mutations = new AtomicLong();
+
+  public ClassRosterIndex(ClassMemberRepository classMemberRepo) {
+    this.classMemberRepo = classMemberRepo;
+  }
+
+  /** Sinh viên có thuộc lớp hay không. */
+  public boolean isMember(Long classId, Long studentId) {
+    if (classId == null || studentId == null) return false;
+    long[] ids = rosters.get(classId);
+    if (ids == null) ids = load(classId);
+    return Arrays.binarySearch(ids, studentId) >= 0;
+  }
+
+  /** Sĩ số lớp (nạp roster nếu chưa có). */
+  public int size(Long classId) {
+    if (classId == null) return 0;
+    long[] ids = rosters.get(classId);
+    if (ids == null) ids = load(classId);
+    return ids.length;
+  }
+
+  /** Gọi sau khi đã lưu ClassMember mới. */
+  public void added(Long classId, Long studentId) {
+    if (classId == null || studentId == null) return;
+    rosters.compute(classId, (k, cur) -> {
+      mutations.incrementAndGet();
+      if (cur == null) return null; // chưa nạp -> lần sau nạp từ DB
+      int pos = Arrays.binarySearch(cur, studentId);
+      if (pos >= 0) return cur;
+      int ins = -pos - 1;
+      long[] next = new long[cur.length + 1];
+      System.arraycopy(cur, 0, next, 0, ins);
+      next[ins] = studentId;
+      System.arraycopy(cur, ins, next, ins + 1, cur.length - ins);
+      return next;
+    });
+  }
+
+  /** Gọi sau khi đã xoá ClassMember. */
+  public void removed(Long classId, Long studentId) {
+    if (classId == null || studentId == null) return;
+    rosters.compute(classId, (k, cur) -> {
+      mutations.incrementAndGet();
+      if (cur == null) return null;
+      int pos = Arrays.binarySearch(cur, studentId);
+      if (pos < 0) return cur;
+      long[] next = new long[cur.length - 1];
+      System.arraycopy(cur, 0, next, 0, pos);
+      System.arraycopy(cur, pos + 1, next, pos, cur.length - pos - 1);
+      return next;
+    });
+  }
+
+  /** Gọi khi xoá lớp. */
+  public void evictClass(Long classId) {
+    if (classId == null) return;
+    rosters.compute(classId, (k, cur) -> {
+      mutations.incrementAndGet();
+      return null;
+    });
+  }
+
+  private long[] load(Long classId) {
+    long epoch = mutations.get();
+
+    List<Long> rows = classMemberRepo.findStudentIdsByClass(classId);
+    long[] ids = new long[rows.size()];
+    for (int i = 0; i < ids.length; i++) ids[i] = rows.get(i);
+    Arrays.sort(ids);
+
+    // Lớp rỗng / id không tồn tại: không cache (isMember luôn false, lần sau hỏi lại DB)
+    if (ids.length == 0) return ids;
+    if (rosters.size() >= MAX_CLASSES) evictAny();
+
+    long[] installed = rosters.compute(classId, (k, cur) -> {
+      if (cur != null) return cur;
+      return mutations.get() == epoch ? ids : null;
+    });
+    return installed != null ? installed : ids;
+  }
+
+  private void evictAny() {
+    var it = rosters.keySet().iterator();
+    if (it.hasNext()) rosters.remove(it.next());
+  }
+}
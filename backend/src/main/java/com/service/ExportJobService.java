@@ -0,0 +1,266 @@
+package com.service;
+
+import com.config.AppProperties;
+import com.domain.entity.ClassEntity;
+import com.exception.ApiException;
+import com.exception.TooManyRequestsException;
+import com.util.SecurityUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Export báo cáo lớp (.xlsx) chạy nền: submit -> poll trạng thái/tiến độ -> tải file.
+ *
+ * - Job chạy trên pool giới hạn (app.export.workers + hàng đợi app.export.queue-capacity), đầy -> 429.
+ * - File lưu trên đĩa, khoá theo (lớp, phiên bản dữ liệu CLASS_REPORT): dữ liệu chưa đổi thì submit lại
+ *   trả luôn job cũ (đang chạy hoặc đã xong), không tạo lại file.
+ * - Dọn định kỳ: job/file quá TTL (kể cả file của phiên bản cũ đã bị thay thế: chỉ xoá khi hết TTL).
+ *
+ * Lưu ý: job + phiên bản nằm trong RAM của instance (như ResourceVersions); khởi động lại thì xoá file cũ.
+ */
+@Service
+public class ExportJobService {
+
+  private static final Logger log = LoggerFactory.getLogger(ExportJobService.class);
+
+  private static final String FILE_PREFIX = "class-";
+  private static final String XLSX = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+  public enum JobStatus {
+    QUEUED,
+    RUNNING,
+    DONE,
+    FAILED
+  }
+
+  /** File đã tạo xong, sẵn sàng gửi về client. */
+  public record Download(Path file, String filename, String contentType) {}
+
+  private static final class Job {
+    final String id = UUID.randomUUID().toString();
+    final Long teacherId;
+    final Long classId;
+    final String version;
+    final Instant createdAt = Instant.now();
+    final AtomicInteger rowsWritten = new AtomicInteger();
+    volatile int totalRows;
+    volatile JobStatus status = JobStatus.QUEUED;
+    volatile String error;
+    volatile Path file;
+    volatile Instant finishedAt;
+
+    Job(Long teacherId, Long classId, String version) {
+      this.teacherId = teacherId;
+      this.classId = classId;
+      this.version = version;
+    }
+  }
+
+  private final TeacherService teacherService;
+  private final ClassAttendanceXlsxWriter xlsxWriter;
+  private final ResourceVersions versions;
+  private final Path dir;
+  private final long ttlMs;
+  private final ThreadPoolExecutor workers;
+
+  private final ConcurrentMap<String, Job> jobs = new ConcurrentHashMap<>();
+  /** Job mới nhất của mỗi lớp (để gộp submit trùng + cache file). */
+  private final ConcurrentMap<Long, Job> latestByClass = new ConcurrentHashMap<>();
+
+  public ExportJobService(TeacherService teacherService,
+                          ClassAttendanceXlsxWriter xlsxWriter,
+                          ResourceVersions versions,
+                          AppProperties props) {
+    this.teacherService = teacherService;
+    this.xlsxWriter = xlsxWriter;
+    this.versions = versions;
+
+    AppProperties.Export cfg = props.getExport();
+    this.dir = Paths.get(cfg.getDir()).toAbsolutePath().normalize();
+    this.ttlMs = TimeUnit.MINUTES.toMillis(Math.max(cfg.getTtlMinutes(), 1));
+
+    int n = Math.max(cfg.getWorkers(), 1);
+    AtomicInteger seq = new AtomicInteger();
+    this.workers = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(Math.max(cfg.getQueueCapacity(), 1)),
+        r -> {
+          Thread t = new Thread(r, "export-worker-" + seq.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        });
+  }
+
+  /** Tạo thư mục export và xoá file của lần chạy trước (phiên bản dữ liệu đã reset). */
+  @PostConstruct
+  public void init() {
+    try {
+      Files.createDirectories(dir);
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, FILE_PREFIX + "*")) {
+        for (Path f : files) Files.deleteIfExists(f);
+      }
+    } catch (IOException e) {
+      log.warn("Cannot prepare export dir {}: {}", dir, e.getMessage());
+    }
+  }
+
+  /** Submit export báo cáo lớp; dữ liệu chưa đổi -> trả job đã có. */
+  public Map<String, Object> submitClassExport(Long classId) {
+    ClassEntity cls = teacherService.requireOwnedClass(classId);
+    // Lấy phiên bản TRƯỚC khi đọc dữ liệu: có ghi xen giữa thì lần submit sau tạo file mới
+    String version = versions.dataVersion(ResourceVersions.Scope.CLASS_REPORT, classId);
+
+    Job fresh = new Job(cls.getTeacherId(), classId, version);
+    Job job = latestByClass.compute(classId, (k, cur) -> reusable(cur, version) ? cur : fresh);
+    if (job != fresh) return view(job);
+
+    jobs.put(fresh.id, fresh);
+    try {
+      workers.execute(() -> run(fresh));
+    } catch (RejectedExecutionException e) {
+      jobs.remove(fresh.id);
+      latestByClass.remove(classId, fresh);
+      throw new TooManyRequestsException("Export queue is full", 5);
+    }
+    return view(fresh);
+  }
+
+  public Map<String, Object> getJob(String jobId) {
+    return view(requireOwnJob(jobId));
+  }
+
+  /** File của job đã xong (409 nếu chưa xong, 410 nếu file đã bị dọn). */
+  public Download getDownload(String jobId) {
+    Job job = requireOwnJob(jobId);
+    if (job.status == JobStatus.FAILED) {
+      throw new ApiException(HttpStatus.CONFLICT, "Export failed", Map.of("error", String.valueOf(job.error)));
+    }
+    if (job.status != JobStatus.DONE) throw new ApiException(HttpStatus.CONFLICT, "Export not ready");
+
+    Path file = job.file;
+    if (file == null || !Files.isRegularFile(file)) throw new ApiException(HttpStatus.GONE, "Export expired");
+    return new Download(file, "attendance-class-" + job.classId + ".xlsx", XLSX);
+  }
+
+  private boolean reusable(Job cur, String version) {
+    if (cur == null || !cur.version.equals(version)) return false;
+    return switch (cur.status) {
+      case QUEUED, RUNNING -> true;
+      case DONE -> cur.file != null && Files.isRegularFile(cur.file);
+      case FAILED -> false;
+    };
+  }
+
+  private void run(Job job) {
+    job.status = JobStatus.RUNNING;
+    Path tmp = null;
+    try {
+      ClassAttendanceXlsxWriter.ClassSheet data = teacherService.loadClassAttendanceExport(job.classId);
+      job.totalRows = data.students().size();
+
+      tmp = Files.createTempFile(dir, FILE_PREFIX + job.classId + "-", ".part");
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+        xlsxWriter.write(data, out, job.rowsWritten::set);
+      }
+      Path dest = dir.resolve(FILE_PREFIX + job.classId + "-" + job.id + ".xlsx");
+      Files.move(tmp, dest, StandardCopyOption.ATOMIC_MOVE);
+
+      job.file = dest;
+      job.status = JobStatus.DONE;
+    } catch (Exception e) {
+      log.warn("Export job {} for class {} failed: {}", job.id, job.classId, e.getMessage());
+      job.error = e instanceof ApiException ? e.getMessage() : "Export failed";
+      job.status = JobStatus.FAILED;
+      deleteQuietly(tmp);
+    } finally {
+      job.finishedAt = Instant.now();
+    }
+  }
+
+  /**
+   * Dọn job đã xong quá TTL. Job của phiên bản cũ (đã có bản mới thay thế) cũng chờ hết TTL:
+   * client vừa thấy DONE có thể đang tải / chuẩn bị tải file đó, xoá sớm sẽ cắt ngang hoặc trả 410.
+   */
+  @Scheduled(fixedDelay = 60_000, initialDelay = 60_000)
+  public void cleanup() {
+    Instant expiredBefore = Instant.now().minusMillis(ttlMs);
+    for (Job job : jobs.values()) {
+      if (job.finishedAt == null || !job.finishedAt.isBefore(expiredBefore)) continue;
+
+      jobs.remove(job.id);
+      latestByClass.remove(job.classId, job);
+      deleteQuietly(job.file);
+    }
+  }
+
+  private Job requireOwnJob(String jobId) {
+    Job job = jobId == null ? null : jobs.get(jobId);
+    var cu = SecurityUtil.currentUser();
+    // Job của người khác trả 404 như job không tồn tại
+    if (job == null || cu == null || !Objects.equals(job.teacherId, cu.getId())) {
+      throw new ApiException(HttpStatus.NOT_FOUND, "Export job not found");
+    }
+    return job;
+  }
+
+  private Map<String, Object> view(Job job) {
+    Map<String, Object> m = new LinkedHashMap<>();
+    m.put("jobId", job.id);
+    m.put("classId", job.classId);
+    m.put("status", job.status);
+    int total = job.totalRows;
+    int done = job.rowsWritten.get();
+    int progress = switch (job.status) {
+      case DONE -> 100;
+      case RUNNING -> total == 0 ? 0 : Math.min(done * 100 / total, 99);
+      default -> 0;
+    };
+    m.put("progress", progress);
+    m.put("rowsWritten", done);
+    m.put("totalRows", total);
+    m.put("createdAt", job.createdAt);
+    m.put("finishedAt", job.finishedAt);
+    if (job.error != null) m.put("error", job.error);
+    if (job.status == JobStatus.DONE) m.put("downloadUrl", "/api/teacher/export-jobs/" + job.id + "/file");
+    return m;
+  }
+
+  private static void deleteQuietly(Path p) {
+    if (p == null) return;
+    try {
+      Files.deleteIfExists(p);
+    } catch (IOException e) {
+      log.debug("Cannot delete export file {}: {}", p, e.getMessage());
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    workers.shutdownNow();
+  }
+}
@@ -27,19 +27,37 @@ public class GoogleAuthService {
 
   private final UserRepository userRepository;
   private final JwtUtil jwtUtil;
+  private final ResourceVersions versions;
   private final String googleClientId;
 
+  /**
+   * Verifier dùng chung (thread-safe): giữ cache public key của Google giữa các lần đăng nhập,
+   * tránh mỗi request lại tải certs qua HTTP.
+   */
+  private final GoogleIdTokenVerifier verifier;
+
   public GoogleAuthService(
       UserRepository userRepository,
       JwtUtil jwtUtil,
+      ResourceVersions versions,
       AppProperties props
   ) {
     this.userRepository = userRepository;
     this.jwtUtil = jwtUtil;
+    this.versions = versions;
 
     // props.getGoogle().getClientId() sẽ lấy từ: app.google.client-id
     // Trong Render nên set env: GOOGLE_CLIENT_ID (đã map trong application.yml)
     this.googleClientId = props.getGoogle() != null ? props.getGoogle().getClientId() : null;
+
+    this.verifier = (googleClientId == null || googleClientId.isBlank())
+        ? null
+        : new GoogleIdTokenVerifier.Builder(
+            new NetHttpTransport(),
+            JacksonFactory.getDefaultInstance()
+        )
+        .setAudience(Collections.singletonList(googleClientId))
+        .build();
   }
 
   /**
@@ -50,7 +68,7 @@ public class GoogleAuthService {
 
     String credential = req.idToken();
 
-    if (googleClientId == null || googleClientId.isBlank()) {
+    if (verifier == null) {
       throw new ResponseStatusException(
           HttpStatus.BAD_REQUEST,
           "Missing GOOGLE_CLIENT_ID"
@@ -58,14 +76,6 @@ public class GoogleAuthService {
     }
 
     try {
-      GoogleIdTokenVerifier verifier =
-          new GoogleIdTokenVerifier.Builder(
-              new NetHttpTransport(),
-              JacksonFactory.getDefaultInstance()
-          )
-          .setAudience(Collections.singletonList(googleClientId))
-          .build();
-
       GoogleIdToken idToken = verifier.verify(credential);
       if (idToken == null) {
         throw new ResponseStatusException(
@@ -96,6 +106,7 @@ public class GoogleAuthService {
         user = userRepository.save(user);
       } else {
         boolean changed = false;
+        boolean renamed = false;
         if (user.getGoogleId() == null) {
           user.setGoogleId(googleId);
           changed = true;
@@ -103,10 +114,13 @@ public class GoogleAuthService {
         if (fullName != null && !fullName.equals(user.getFullName())) {
           user.setFullName(fullName);
           changed = true;
+          renamed = true;
         }
         if (changed) {
           user = userRepository.save(user);
         }
+        // Tên hiển thị ở danh sách thành viên / báo cáo / lớp của sinh viên -> ETag + file export cũ hết hiệu lực
+        if (renamed) versions.userChanged();
       }
 
       String token = jwtUtil.generateToken(
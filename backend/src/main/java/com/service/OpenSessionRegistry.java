@@ -0,0 +1,173 @@
+package com.service;
+
+import com.config.AppProperties;
+import com.domain.entity.SessionEntity;
+import com.domain.enums.SessionStatus;
+import com.util.Geofence;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry in-memory các buổi học đang OPEN.
+ *
+ * Mục tiêu: khi cả lớp quét cùng 1 mã QR, check-in chỉ cần đọc snapshot trong RAM
+ * (status/qrToken/hạn QR/geofence tính sẵn) thay vì findById cùng 1 dòng hàng trăm lần.
+ *
+ * - openSession: put snapshot
+ * - closeSession / deleteSession / deleteClass: evict
+ * - Check-in gặp cache miss: đọc DB rồi registerLoaded, chỉ cache nếu không có mở/đóng nào xen giữa
+ * - Snapshot hết hạn QR sẽ bị evict khi đọc tới (và được dọn khi có put mới)
+ */
+@Component
+public class OpenSessionRegistry {
+
+  /** Snapshot bất biến của 1 session đang mở (đủ để validate check-in). */
+  public record OpenSession(
+      Long sessionId,
+      Long classId,
+      String qrToken,
+      LocalDateTime qrTokenExpiresAt,
+      LocalDateTime sessionDate,
+      Geofence geofence // null nếu giảng viên không gửi GPS
+  ) {
+    public boolean isExpired(LocalDateTime now) {
+      return qrTokenExpiresAt != null && now.isAfter(qrTokenExpiresAt);
+    }
+  }
+
+  private final ConcurrentMap<Long, OpenSession> sessions = new ConcurrentHashMap<>();
+
+  /**
+   * Đếm số lần mở / đóng / xoá session. Check-in đọc DB khi cache miss chỉ cài snapshot nếu không có
+   * thay đổi nào xảy ra trong lúc đang query (cùng cách với ClassRosterIndex.mutations).
+   */
+  private final AtomicLong mutations = new AtomicLong();
+  private final double defaultRadiusMeters;
+
+  public OpenSessionRegistry(AppProperties props) {
+    this.defaultRadiusMeters = props.getAttendance().getMaxDistanceMeters();
+  }
+
+  public double getDefaultRadiusMeters() {
+    return defaultRadiusMeters;
+  }
+
+  /**
+   * Lấy snapshot session đang mở (null nếu không có hoặc đã hết hạn).
+   * Entry hết hạn bị xoá luôn để lần sau caller đọc lại từ DB.
+   */
+  public OpenSession get(Long sessionId) {
+    if (sessionId == null) return null;
+    OpenSession s = sessions.get(sessionId);
+    if (s == null) return null;
+    if (s.isExpired(LocalDateTime.now())) {
+      sessions.remove(sessionId, s);
+      return null;
+    }
+    return s;
+  }
+
+  /** Số lần registry bị ghi từ phía giảng viên (trước khi đọc DB ở nhánh cache miss của check-in). */
+  public long epoch() {
+    return mutations.get();
+  }
+
+  /**
+   * Đăng ký snapshot khi giảng viên mở session (nguồn chuẩn, luôn ghi đè).
+   * Chỉ nhận session OPEN còn hạn, ngược lại evict.
+   * @return snapshot đã đăng ký (hoặc null)
+   */
+  public OpenSession register(SessionEntity session) {
+    if (session == null || session.getId() == null) return null;
+    LocalDateTime now = LocalDateTime.now();
+    OpenSession snapshot = snapshotOf(session, now);
+    if (snapshot == null) {
+      evict(session.getId());
+      return null;
+    }
+
+    sessions.compute(snapshot.sessionId(), (k, cur) -> {
+      mutations.incrementAndGet();
+      return snapshot;
+    });
+    purgeExpired(now);
+    return snapshot;
+  }
+
+  /**
+   * Nạp snapshot đọc từ DB khi check-in gặp cache miss (vd: sau khi restart).
+   * Chỉ cài vào registry nếu không có mở / đóng / xoá nào kể từ epoch (đọc trước query):
+   * closeSession chen giữa không bị snapshot OPEN cũ ghi ngược lại, openSession lại không bị token cũ đè.
+   * Bị tranh chấp -> trả snapshot mới hơn đang có, hoặc snapshot vừa đọc nhưng không cache.
+   * @return null nếu session không OPEN / đã hết hạn
+   */
+  public OpenSession registerLoaded(SessionEntity session, long epoch) {
+    if (session == null || session.getId() == null) return null;
+    LocalDateTime now = LocalDateTime.now();
+    OpenSession snapshot = snapshotOf(session, now);
+    if (snapshot == null) return null;
+
+    OpenSession installed = sessions.compute(snapshot.sessionId(), (k, cur) -> {
+      if (cur != null && !cur.isExpired(now)) return cur;
+      return mutations.get() == epoch ? snapshot : null;
+    });
+    return installed != null ? installed : snapshot;
+  }
+
+  /** Snapshot của session OPEN còn hạn, ngược lại null. */
+  private OpenSession snapshotOf(SessionEntity session, LocalDateTime now) {
+    if (session.getStatus() != SessionStatus.OPEN || session.getQrToken() == null) return null;
+    OpenSession snapshot = new OpenSession(
+        session.getId(),
+        session.getClassId(),
+        session.getQrToken(),
+        session.getQrTokenExpiresAt(),
+        session.getSessionDate(),
+        buildGeofence(session)
+    );
+    return snapshot.isExpired(now) ? null : snapshot;
+  }
+
+  public void evict(Long sessionId) {
+    if (sessionId == null) return;
+    sessions.compute(sessionId, (k, cur) -> {
+      mutations.incrementAndGet();
+      return null;
+    });
+  }
+
+  /** Xoá toàn bộ session đang mở của 1 lớp (dùng khi xoá lớp). */
+  public void evictClass(Long classId) {
+    if (classId == null) return;
+    // Tăng trước khi xoá: loader cài xen giữa sẽ bị removeIf dọn, loader cài sau sẽ lệch epoch
+    mutations.incrementAndGet();
+    sessions.values().removeIf(s -> classId.equals(s.classId()));
+  }
+
+  public int size() {
+    return sessions.size();
+  }
+
+  /** Dựng geofence 1 lần cho mỗi session (bán kính riêng / đa giác / mặc định). */
+  private Geofence buildGeofence(SessionEntity session) {
+    if (session.getTeacherLat() == null || session.getTeacherLng() == null) return null;
+    double lat = session.getTeacherLat().doubleValue();
+    double lng = session.getTeacherLng().doubleValue();
+    double radius = session.getGeofenceRadiusMeters() != null
+        ? session.getGeofenceRadiusMeters()
+        : defaultRadiusMeters;
+
+    var polygon = Geofence.decodePolygon(session.getGeofencePolygon());
+    return polygon != null
+        ? Geofence.polygon(lat, lng, radius, polygon)
+        : Geofence.circle(lat, lng, radius);
+  }
+
+  private void purgeExpired(LocalDateTime now) {
+    sessions.values().removeIf(s -> s.isExpired(now));
+  }
+}
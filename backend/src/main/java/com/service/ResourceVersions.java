@@ -0,0 +1,115 @@
+package com.service;
+
+import com.security.UserPrincipal;
+import com.util.SecurityUtil;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Số phiên bản (version stamp) in-memory của các dữ liệu đọc nhiều, dùng làm ETag.
+ *
+ * - Mỗi lần ghi (sau khi commit) tăng version của phạm vi bị ảnh hưởng.
+ * - GET tính ETag chỉ từ version + người dùng hiện tại -> trả 304 mà không cần đụng repository.
+ * - ETag gắn id người dùng: ETag của người khác không dùng được để dò dữ liệu.
+ * - ETag gắn thời điểm khởi động: version reset khi restart nên ETag cũ tự mất hiệu lực.
+ *
+ * Lưu ý: version nằm trong RAM của từng instance (app hiện chạy 1 instance).
+ */
+@Component
+public class ResourceVersions {
+
+  public enum Scope {
+    CLASS_SESSIONS,
+    CLASS_MEMBERS,
+    CLASS_REPORT,
+    SESSION_ATTENDANCE,
+    STUDENT_CLASSES
+  }
+
+  private record Key(Scope scope, Long id) {}
+
+  private final String instance = Long.toString(System.currentTimeMillis(), 36);
+  private final ConcurrentMap<Key, AtomicLong> versions = new ConcurrentHashMap<>();
+
+  /** Đổi tên/xoá lớp ảnh hưởng danh sách lớp của mọi sinh viên trong lớp -> 1 version chung. */
+  private final AtomicLong catalog = new AtomicLong();
+
+  /**
+   * Đổi họ tên người dùng (hiếm: chỉ khi đăng nhập Google với tên mới) ảnh hưởng mọi nơi hiển thị tên:
+   * thành viên lớp, báo cáo lớp, điểm danh buổi học, danh sách lớp của sinh viên (tên giảng viên).
+   * Không tra được hết các lớp liên quan -> 1 version chung cho các phạm vi đó.
+   */
+  private final AtomicLong people = new AtomicLong();
+
+  /** ETag (strong) cho phạm vi + người dùng hiện tại. */
+  public String etag(Scope scope, Long id) {
+    UserPrincipal user = SecurityUtil.currentUser();
+    StringBuilder sb = new StringBuilder(48).append('"')
+        .append(instance).append('-')
+        .append(scope.ordinal()).append('-')
+        .append(id).append('-')
+        .append(user == null ? 0 : user.getId()).append('-')
+        .append(version(scope, id));
+    if (scope == Scope.STUDENT_CLASSES) sb.append('-').append(catalog.get());
+    if (showsNames(scope)) sb.append('-').append(people.get());
+    return sb.append('"').toString();
+  }
+
+  /**
+   * Phiên bản dữ liệu (không gắn người dùng) - dùng làm khoá cache cho file export.
+   * Đổi khi có ghi hoặc khi app khởi động lại.
+   */
+  public String dataVersion(Scope scope, Long id) {
+    String v = instance + "-" + version(scope, id);
+    return showsNames(scope) ? v + "-" + people.get() : v;
+  }
+
+  private static boolean showsNames(Scope scope) {
+    return scope != Scope.CLASS_SESSIONS;
+  }
+
+  /** Tạo / sửa / xoá / mở / đóng buổi học. */
+  public void sessionsChanged(Long classId) {
+    bump(Scope.CLASS_SESSIONS, classId);
+    bump(Scope.CLASS_REPORT, classId);
+  }
+
+  /** Sinh viên tham gia / bị xoá khỏi lớp. */
+  public void membersChanged(Long classId, Long studentId) {
+    bump(Scope.CLASS_MEMBERS, classId);
+    bump(Scope.CLASS_REPORT, classId);
+    bump(Scope.STUDENT_CLASSES, studentId);
+  }
+
+  /** Có bản ghi điểm danh mới / bị xoá trong buổi học. */
+  public void attendanceChanged(Long classId, Long sessionId) {
+    bump(Scope.SESSION_ATTENDANCE, sessionId);
+    bump(Scope.CLASS_REPORT, classId);
+  }
+
+  /** Đổi họ tên người dùng. */
+  public void userChanged() {
+    people.incrementAndGet();
+  }
+
+  /** Đổi tên / xoá lớp. */
+  public void classChanged(Long classId) {
+    catalog.incrementAndGet();
+    bump(Scope.CLASS_SESSIONS, classId);
+    bump(Scope.CLASS_MEMBERS, classId);
+    bump(Scope.CLASS_REPORT, classId);
+  }
+
+  private long version(Scope scope, Long id) {
+    AtomicLong v = versions.get(new Key(scope, id));
+    return v == null ? 0 : v.get();
+  }
+
+  private void bump(Scope scope, Long id) {
+    if (id == null) return;
+    versions.computeIfAbsent(new Key(scope, id), k -> new AtomicLong()).incrementAndGet();
+  }
+}
@@ -0,0 +1,127 @@
+package com.service;
+
+import com.domain.enums.AttendanceStatus;
+import com.repo.AttendanceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bộ đếm "đúng giờ / muộn / chưa điểm danh" in-memory cho các buổi học đang mở.
+ *
+ * - openSession: seed từ DB (mở lại session có thể đã có bản ghi), sĩ số lấy từ ClassRosterIndex.
+ * - checkIn / manualAttendance: tăng LongAdder sau khi bản ghi được chấp nhận (không tranh chấp khi cả lớp quét).
+ * - Đọc số liệu không phụ thuộc sĩ số lớp: 3 phép sum + 1 lần đọc độ dài mảng roster.
+ * - closeSession: đối chiếu với DB (nguồn chuẩn), log chênh lệch rồi bỏ bộ đếm.
+ */
+@Component
+public class SessionLiveCounters {
+
+  private static final Logger log = LoggerFactory.getLogger(SessionLiveCounters.class);
+
+  /** Số liệu tại 1 thời điểm. */
+  public record Counts(long rosterSize, long onTime, long late, long absent) {
+    public long present() {
+      return onTime + late;
+    }
+
+    public long notYet() {
+      return Math.max(rosterSize - onTime - late - absent, 0);
+    }
+  }
+
+  private static final class Counters {
+    final Long classId;
+    final LongAdder onTime = new LongAdder();
+    final LongAdder late = new LongAdder();
+    final LongAdder absent = new LongAdder();
+
+    Counters(Long classId) {
+      this.classId = classId;
+    }
+
+    void add(AttendanceStatus status, long n) {
+      if (status == null) return;
+      switch (status) {
+        case ON_TIME -> onTime.add(n);
+        case LATE -> late.add(n);
+        case ABSENT -> absent.add(n);
+      }
+    }
+  }
+
+  private final AttendanceRepository attendanceRepo;
+  private final ClassRosterIndex rosterIndex;
+  private final ConcurrentMap<Long, Counters> counters = new ConcurrentHashMap<>();
+
+  public SessionLiveCounters(AttendanceRepository attendanceRepo, ClassRosterIndex rosterIndex) {
+    this.attendanceRepo = attendanceRepo;
+    this.rosterIndex = rosterIndex;
+  }
+
+  /** Khởi tạo (hoặc khởi tạo lại) bộ đếm cho session vừa mở. */
+  public void seed(Long sessionId, Long classId) {
+    Counters c = loadFromDb(sessionId, classId);
+    rosterIndex.size(classId); // nạp sẵn roster
+    counters.put(sessionId, c);
+  }
+
+  /** Gọi sau khi 1 bản ghi điểm danh được chấp nhận. Session không có bộ đếm thì bỏ qua. */
+  public void recorded(Long sessionId, AttendanceStatus status) {
+    Counters c = counters.get(sessionId);
+    if (c != null) c.add(status, 1);
+  }
+
+  /** Số liệu in-memory, null nếu session không có bộ đếm (đã đóng / app vừa khởi động lại). */
+  public Counts get(Long sessionId) {
+    Counters c = counters.get(sessionId);
+    return c == null ? null : toCounts(c);
+  }
+
+  /** Đếm trực tiếp từ DB (session đã đóng). */
+  public Counts countFromDb(Long sessionId, Long classId) {
+    return toCounts(loadFromDb(sessionId, classId));
+  }
+
+  /**
+   * Đóng session: bỏ bộ đếm và đối chiếu với DB.
+   * Chênh lệch (vd: bản ghi write-behind chưa flush, check-in đua lúc seed) chỉ được log lại.
+   * @return số liệu theo DB
+   */
+  public Counts reconcile(Long sessionId, Long classId) {
+    Counters mem = counters.remove(sessionId);
+    Counts db = countFromDb(sessionId, classId);
+    if (mem != null) {
+      Counts live = toCounts(mem);
+      if (live.onTime() != db.onTime() || live.late() != db.late() || live.absent() != db.absent()) {
+        log.info("Live counters drift for session {}: memory={} db={}", sessionId, live, db);
+      }
+    }
+    return db;
+  }
+
+  public void evict(Long sessionId) {
+    if (sessionId != null) counters.remove(sessionId);
+  }
+
+  public void evictClass(Long classId) {
+    if (classId == null) return;
+    counters.values().removeIf(c -> classId.equals(c.classId));
+  }
+
+  private Counters loadFromDb(Long sessionId, Long classId) {
+    Counters c = new Counters(classId);
+    for (Object[] r : attendanceRepo.countBySessionGroupByStatus(sessionId)) {
+      c.add((AttendanceStatus) r[0], ((Number) r[1]).longValue());
+    }
+    return c;
+  }
+
+  private Counts toCounts(Counters c) {
+    return new Counts(rosterIndex.size(c.classId), c.onTime.sum(), c.late.sum(), c.absent.sum());
+  }
+}
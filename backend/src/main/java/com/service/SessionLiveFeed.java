@@ -0,0 +1,206 @@
+package com.service;
+
+import com.api.dto.AttendanceDtos;
+import com.config.AppProperties;
+import com.exception.TooManyRequestsException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Live feed điểm danh (Server-Sent Events) cho màn hình buổi học của giảng viên.
+ *
+ * Mỗi check-in được chấp nhận (QR hoặc thủ công) được đẩy thành 1 sự kiện nhỏ "attendance"
+ * tới các trình duyệt đang theo dõi session -> không cần tải lại toàn bộ danh sách.
+ *
+ * - publish() không bao giờ chặn request check-in: chỉ offer vào hàng đợi có giới hạn của từng subscriber.
+ * - Mỗi subscriber có 1 "drainer" (virtual thread) chỉ chạy khi hàng đợi có dữ liệu,
+ *   client chậm chỉ làm chậm chính nó.
+ * - Hàng đợi đầy -> đóng kết nối, client kết nối lại và tải lại danh sách 1 lần.
+ * - Heartbeat (comment SSE) định kỳ giữ kết nối qua proxy và phát hiện client đã ngắt.
+ */
+@Component
+public class SessionLiveFeed {
+
+  private static final Logger log = LoggerFactory.getLogger(SessionLiveFeed.class);
+
+  private static final String EVENT_ATTENDANCE = "attendance";
+  private static final Object HEARTBEAT = new Object();
+
+  private final int bufferSize;
+  private final int maxSubscribersPerSession;
+  private final long timeoutMs;
+
+  private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+  private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+  private final ScheduledExecutorService heartbeats;
+
+  public SessionLiveFeed(AppProperties props) {
+    AppProperties.LiveFeed cfg = props.getLiveFeed();
+    this.bufferSize = Math.max(cfg.getBufferSize(), 1);
+    this.maxSubscribersPerSession = Math.max(cfg.getMaxSubscribersPerSession(), 1);
+    this.timeoutMs = TimeUnit.MINUTES.toMillis(Math.max(cfg.getTimeoutMinutes(), 1));
+
+    long heartbeatSeconds = Math.max(cfg.getHeartbeatSeconds(), 1);
+    this.heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "live-feed-heartbeat");
+      t.setDaemon(true);
+      return t;
+    });
+    heartbeats.scheduleAtFixedRate(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+  }
+
+  /** Đăng ký nhận sự kiện của 1 session (caller đã kiểm tra quyền). */
+  public SseEmitter subscribe(Long sessionId) {
+    SseEmitter emitter = new SseEmitter(timeoutMs);
+    Subscriber sub = new Subscriber(sessionId, emitter, new ArrayBlockingQueue<>(bufferSize));
+
+    // compute: kiểm tra giới hạn + thêm nguyên tử (không đua với remove() xoá set rỗng)
+    subscribers.compute(sessionId, (k, set) -> {
+      if (set == null) set = ConcurrentHashMap.newKeySet();
+      if (set.size() >= maxSubscribersPerSession) {
+        throw new TooManyRequestsException("Too many live connections for this session", 5);
+      }
+      set.add(sub);
+      return set;
+    });
+
+    emitter.onCompletion(() -> remove(sub));
+    emitter.onTimeout(() -> remove(sub));
+    emitter.onError(e -> remove(sub));
+
+    // Sự kiện đầu tiên: báo client đã kết nối (client dùng để tải lại danh sách 1 lần)
+    sub.offer(SseEmitter.event().name("ready").data(Map.of("sessionId", sessionId)));
+    drain(sub);
+    return emitter;
+  }
+
+  /** Đẩy 1 bản ghi điểm danh mới tới mọi subscriber của session. */
+  public void publish(AttendanceDtos.CheckInAttendance attendance) {
+    Set<Subscriber> set = subscribers.get(attendance.sessionId());
+    if (set == null || set.isEmpty()) return;
+
+    for (Subscriber sub : set) {
+      if (sub.offer(attendance)) {
+        drain(sub);
+      } else {
+        // Client không theo kịp -> đóng để nó kết nối lại và đồng bộ lại từ đầu
+        remove(sub);
+        sub.emitter.complete();
+      }
+    }
+  }
+
+  /** Đóng toàn bộ kết nối của session (session bị đóng/xoá). */
+  public void closeSession(Long sessionId) {
+    Set<Subscriber> set = subscribers.remove(sessionId);
+    if (set == null) return;
+    for (Subscriber sub : set) sub.emitter.complete();
+  }
+
+  public int subscriberCount(Long sessionId) {
+    Set<Subscriber> set = subscribers.get(sessionId);
+    return set == null ? 0 : set.size();
+  }
+
+  private void heartbeat() {
+    for (Set<Subscriber> set : subscribers.values()) {
+      for (Subscriber sub : set) {
+        // Hàng đợi đang có sự kiện thì không cần heartbeat
+        if (sub.queue.isEmpty() && sub.offer(HEARTBEAT)) drain(sub);
+      }
+    }
+  }
+
+  private void drain(Subscriber sub) {
+    if (!sub.draining.compareAndSet(false, true)) return;
+    try {
+      senders.execute(() -> runDrain(sub));
+    } catch (RuntimeException e) {
+      // executor đã shutdown (đang tắt app)
+      sub.draining.set(false);
+    }
+  }
+
+  private void runDrain(Subscriber sub) {
+    try {
+      Object item;
+      while ((item = sub.queue.poll()) != null) {
+        sub.emitter.send(toEvent(item));
+      }
+    } catch (IOException | IllegalStateException e) {
+      // client đã ngắt kết nối
+      remove(sub);
+      sub.emitter.completeWithError(e);
+      return;
+    } finally {
+      sub.draining.set(false);
+    }
+    // Có sự kiện đến đúng lúc vừa nhả cờ -> chạy tiếp
+    if (!sub.queue.isEmpty()) drain(sub);
+  }
+
+  /** SseEventBuilder giữ trạng thái khi build -> dựng mới cho mỗi lần gửi. */
+  private static SseEmitter.SseEventBuilder toEvent(Object item) {
+    if (item == HEARTBEAT) return SseEmitter.event().comment("hb");
+    if (item instanceof AttendanceDtos.CheckInAttendance a) {
+      return SseEmitter.event().name(EVENT_ATTENDANCE).data(a, MediaType.APPLICATION_JSON);
+    }
+    return (SseEmitter.SseEventBuilder) item;
+  }
+
+  private void remove(Subscriber sub) {
+    subscribers.computeIfPresent(sub.sessionId, (k, set) -> {
+      set.remove(sub);
+      return set.isEmpty() ? null : set;
+    });
+  }
+
+  @PreDestroy
+  public void stop() {
+    heartbeats.shutdownNow();
+    for (Set<Subscriber> set : subscribers.values()) {
+      for (Subscriber sub : set) sub.emitter.complete();
+    }
+    subscribers.clear();
+    senders.shutdown();
+    try {
+      if (!senders.awaitTermination(2, TimeUnit.SECONDS)) senders.shutdownNow();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    log.debug("Live feed stopped");
+  }
+
+  private static final class Subscriber {
+    final Long sessionId;
+    final SseEmitter emitter;
+    final BlockingQueue<Object> queue;
+    final AtomicBoolean draining = new AtomicBoolean();
+
+    Subscriber(Long sessionId, SseEmitter emitter, BlockingQueue<Object> queue) {
+      this.sessionId = sessionId;
+      this.emitter = emitter;
+      this.queue = queue;
+    }
+
+    boolean offer(Object item) {
+      return queue.offer(item);
+    }
+  }
+}
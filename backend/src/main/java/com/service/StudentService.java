@@ -5,6 +5,7 @@ import com.domain.entity.ClassEntity;
 import com.domain.entity.ClassMember;
 import com.domain.entity.SessionEntity;
 import com.exception.ApiException;
+import com.repo.AttendanceSummaryJdbcRepository;
 import com.repo.AttendanceRepository;
 import com.repo.ClassMemberRepository;
 import com.repo.ClassRepository;
@@ -36,17 +37,26 @@ public class StudentService {
   private final SessionRepository sessionRepo;
   private final AttendanceRepository attendanceRepo;
   private final UserRepository userRepo;
+  private final ClassRosterIndex rosterIndex;
+  private final ResourceVersions versions;
+  private final AttendanceSummaryJdbcRepository summaryJdbc;
 
   public StudentService(ClassRepository classRepo,
                         ClassMemberRepository classMemberRepo,
                         SessionRepository sessionRepo,
                         AttendanceRepository attendanceRepo,
-                        UserRepository userRepo) {
+                        UserRepository userRepo,
+                        ClassRosterIndex rosterIndex,
+                        ResourceVersions versions,
+                        AttendanceSummaryJdbcRepository summaryJdbc) {
     this.classRepo = classRepo;
     this.classMemberRepo = classMemberRepo;
     this.sessionRepo = sessionRepo;
     this.attendanceRepo = attendanceRepo;
     this.userRepo = userRepo;
+    this.rosterIndex = rosterIndex;
+    this.versions = versions;
+    this.summaryJdbc = summaryJdbc;
   }
 
   /**
@@ -136,6 +146,10 @@ public class StudentService {
       // Trường hợp hiếm: đua điều kiện (2 request cùng lúc) -> lấy lại bản ghi
       member = classMemberRepo.findByClassIdAndStudentId(cls.getId(), studentId).orElse(null);
     }
+    // Tham gia lại sau khi bị xoá khỏi lớp: dựng lại dòng tổng hợp từ các bản ghi cũ
+    summaryJdbc.rebuildStudent(cls.getId(), studentId);
+    rosterIndex.added(cls.getId(), studentId);
+    versions.membersChanged(cls.getId(), studentId);
 
     return Map.of(
         "message", "Tham gia lớp thành công",
@@ -151,7 +165,7 @@ public class StudentService {
   public List<Map<String, Object>> getSessionsInClass(Long classId) {
     Long studentId = currentStudentId();
 
-    if (!classMemberRepo.existsByClassIdAndStudentId(classId, studentId)) {
+    if (!rosterIndex.isMember(classId, studentId)) {
       throw new ApiException(HttpStatus.FORBIDDEN, "Bạn chưa tham gia lớp này");
     }
 
@@ -179,7 +193,7 @@ public class StudentService {
   public List<Map<String, Object>> getAttendanceHistoryInClass(Long classId) {
     Long studentId = currentStudentId();
 
-    if (!classMemberRepo.existsByClassIdAndStudentId(classId, studentId)) {
+    if (!rosterIndex.isMember(classId, studentId)) {
       throw new ApiException(HttpStatus.FORBIDDEN, "Bạn chưa tham gia lớp này");
     }
 
@@ -1,5 +1,6 @@
 package com.service;
 
+import com.api.dto.AttendanceDtos;
 import com.api.dto.TeacherDtos;
 import com.config.AppProperties;
 import com.domain.entity.Attendance;
@@ -9,22 +10,35 @@ import com.domain.entity.SessionEntity;
 import com.domain.enums.AttendanceStatus;
 import com.domain.enums.SessionStatus;
 import com.exception.ApiException;
+import com.repo.AttendanceInsertRepository;
 import com.repo.AttendanceRepository;
+import com.repo.AttendanceSummaryJdbcRepository;
+import com.repo.AttendanceSummaryRepository;
 import com.repo.ClassMemberRepository;
 import com.repo.ClassRepository;
+import com.repo.OwnedSession;
 import com.repo.SessionRepository;
+import com.repo.StudentAttendanceCounts;
+import com.security.QrTokenSigner;
+import com.util.AttendanceMatrix;
 import com.util.CodeUtil;
+import com.util.Geofence;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import com.util.SecurityUtil;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 /**
@@ -40,22 +54,56 @@ import java.util.*;
 @Service
 public class TeacherService {
 
+  private static final int MAX_DELTA_PAGE = 1000;
+
   private final ClassRepository classRepo;
   private final SessionRepository sessionRepo;
   private final ClassMemberRepository classMemberRepo;
   private final AttendanceRepository attendanceRepo;
+  private final AttendanceInsertRepository attendanceInsertRepo;
+  private final OpenSessionRegistry openSessions;
+  private final ClassRosterIndex rosterIndex;
+  private final QrTokenSigner qrSigner;
+  private final SessionLiveFeed liveFeed;
+  private final SessionLiveCounters liveCounters;
+  private final ResourceVersions versions;
+  private final AttendanceSummaryRepository summaryRepo;
+  private final AttendanceSummaryJdbcRepository summaryJdbc;
   private final int onTimeMinutes;
+  private final Duration cursorSettle;
 
   public TeacherService(ClassRepository classRepo,
                         SessionRepository sessionRepo,
                         ClassMemberRepository classMemberRepo,
                         AttendanceRepository attendanceRepo,
+                        AttendanceInsertRepository attendanceInsertRepo,
+                        OpenSessionRegistry openSessions,
+                        ClassRosterIndex rosterIndex,
+                        QrTokenSigner qrSigner,
+                        SessionLiveFeed liveFeed,
+                        SessionLiveCounters liveCounters,
+                        ResourceVersions versions,
+                        AttendanceSummaryRepository summaryRepo,
+                        AttendanceSummaryJdbcRepository summaryJdbc,
                         AppProperties props) {
     this.classRepo = classRepo;
     this.sessionRepo = sessionRepo;
     this.classMemberRepo = classMemberRepo;
     this.attendanceRepo = attendanceRepo;
+    this.attendanceInsertRepo = attendanceInsertRepo;
+    this.openSessions = openSessions;
+    this.rosterIndex = rosterIndex;
+    this.qrSigner = qrSigner;
+    this.liveFeed = liveFeed;
+    this.liveCounters = liveCounters;
+    this.versions = versions;
+    this.summaryRepo = summaryRepo;
+    this.summaryJdbc = summaryJdbc;
     this.onTimeMinutes = props.getAttendance().getOnTimeMinutes();
+
+    // Khoảng "chưa ổn định" của cursor delta: giao dịch đang ghi dở, cộng thêm độ trễ flush khi bật write-behind
+    AppProperties.WriteBehind wb = props.getAttendance().getWriteBehind();
+    this.cursorSettle = Duration.ofMillis(1000 + (wb.isEnabled() ? 2 * wb.getFlushIntervalMs() : 0));
   }
 
   /** Lấy id giảng viên hiện tại từ JWT. */
@@ -71,6 +119,24 @@ public class TeacherService {
     return s.trim().replaceAll("\\s+", " ").toLowerCase();
   }
 
+  /**
+   * Chạy action sau khi transaction hiện tại commit (hoặc chạy ngay nếu không có transaction).
+   * Dùng để evict cache in-memory: nếu evict trước commit, 1 request check-in chen giữa
+   * có thể đọc lại dữ liệu cũ từ DB và nạp ngược vào cache.
+   */
+  private static void afterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        action.run();
+      }
+    });
+  }
+
 
   public List<ClassEntity> getMyClasses() {
     return classRepo.findByTeacherIdOrderByCreatedAtDesc(currentTeacherId());
@@ -109,10 +175,8 @@ public class TeacherService {
   }
 
   public ClassEntity updateClass(Long classId, TeacherDtos.UpdateClassRequest req) {
-    ClassEntity cls = classRepo.findById(classId).orElse(null);
-    if (cls == null || !Objects.equals(cls.getTeacherId(), currentTeacherId())) {
-      throw new ApiException(HttpStatus.NOT_FOUND, "Class not found");
-    }
+    ClassEntity cls = classRepo.findByIdAndTeacherId(classId, currentTeacherId())
+        .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "Class not found"));
 
     String normName = normalizeName(req.className());
     if (classRepo.existsByTeacherIdAndNormalizedNameAndIdNot(currentTeacherId(), normName, classId)) {
@@ -121,79 +185,78 @@ public class TeacherService {
 
     cls.setClassName(req.className());
     cls.setNormalizedName(normName);
-    return classRepo.save(cls);
+    cls = classRepo.save(cls);
+    versions.classChanged(classId);
+    return cls;
   }
 
   
   @Transactional
   public Map<String, Object> deleteClass(Long classId) {
-    ClassEntity cls = classRepo.findById(classId).orElse(null);
-    if (cls == null || !Objects.equals(cls.getTeacherId(), currentTeacherId())) {
-      throw new ApiException(HttpStatus.NOT_FOUND, "Class not found");
-    }
+    ClassEntity cls = classRepo.findByIdAndTeacherId(classId, currentTeacherId())
+        .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "Class not found"));
 
-    // 1) delete attendance of all sessions in this class
-    var sessions = sessionRepo.findByClassId(classId);
-    if (sessions != null && !sessions.isEmpty()) {
-      var sessionIds = sessions.stream().map(SessionEntity::getId).toList();
-      attendanceRepo.deleteBySessionIdIn(sessionIds);
-    }
+    // Mỗi bước là 1 câu DELETE hàng loạt (không nạp entity), số câu lệnh không phụ thuộc kích thước lớp
+    // 1) delete attendance of all sessions in this class (khoá session trước: xem SessionRepository.lockById)
+    sessionRepo.lockByClassId(classId);
+    attendanceRepo.deleteByClassId(classId);
 
     // 2) delete sessions
     sessionRepo.deleteByClassId(classId);
 
-    // 3) delete roster (members)
+    // 3) delete roster (members) + bảng tổng hợp
     classMemberRepo.deleteByClassId(classId);
+    summaryJdbc.deleteClass(classId);
 
     // 4) delete class
     classRepo.delete(cls);
 
+    afterCommit(() -> {
+      openSessions.evictClass(classId);
+      liveCounters.evictClass(classId);
+      rosterIndex.evictClass(classId);
+      versions.classChanged(classId);
+    });
+
     return Map.of("message", "Deleted class (members + sessions + attendance)");
   }
 
   @Transactional
   public Map<String, Object> deleteSession(Long sessionId) {
-    SessionEntity session = sessionRepo.findById(sessionId).orElse(null);
-    if (session == null) throw new ApiException(HttpStatus.NOT_FOUND, "Session not found");
-
-    ClassEntity cls = classRepo.findById(session.getClassId()).orElse(null);
-    if (cls == null || !Objects.equals(cls.getTeacherId(), currentTeacherId())) {
-      throw new ApiException(HttpStatus.FORBIDDEN, "Forbidden");
-    }
+    SessionEntity session = ownedSession(sessionId).session();
 
-    attendanceRepo.deleteBySessionId(sessionId);
+    // 1 statement: xoá attendance của buổi + trừ đúng phần đó khỏi bảng tổng hợp.
+    // Không tính lại cả lớp: buổi khác của lớp có thể đang OPEN, ghi đè tổng sẽ làm mất check-in đồng thời.
+    // Khoá session trước để check-in đang ghi dở không để lại bản ghi mồ côi.
+    sessionRepo.lockById(sessionId);
+    summaryJdbc.deleteSessionAttendance(session.getClassId(), sessionId);
     sessionRepo.delete(session);
 
+    afterCommit(() -> {
+      openSessions.evict(sessionId);
+      liveCounters.evict(sessionId);
+      liveFeed.closeSession(sessionId);
+      versions.sessionsChanged(session.getClassId());
+      versions.attendanceChanged(session.getClassId(), sessionId);
+    });
+
     return Map.of("message", "Deleted session and its attendance");
   }
 
   @Transactional
   public Map<String, Object> manualAttendance(Long sessionId, TeacherDtos.ManualAttendanceRequest req) {
-    SessionEntity session = sessionRepo.findById(sessionId).orElse(null);
-    if (session == null) throw new ApiException(HttpStatus.NOT_FOUND, "Session not found");
-
-    ClassEntity cls = classRepo.findById(session.getClassId()).orElse(null);
-    if (cls == null || !Objects.equals(cls.getTeacherId(), currentTeacherId())) {
-      throw new ApiException(HttpStatus.FORBIDDEN, "Forbidden");
-    }
+    OwnedSession owned = ownedSession(sessionId);
+    SessionEntity session = owned.session();
+    ClassEntity cls = owned.cls();
 
     Long studentId = req.studentId();
     if (studentId == null) throw new ApiException(HttpStatus.BAD_REQUEST, "studentId is required");
 
     // only allow manual check-in for students in this class
-    if (!classMemberRepo.existsByClassIdAndStudentId(cls.getId(), studentId)) {
+    if (!rosterIndex.isMember(cls.getId(), studentId)) {
       throw new ApiException(HttpStatus.BAD_REQUEST, "Student is not in this class");
     }
 
-    var existing = attendanceRepo.findBySessionIdAndStudentId(sessionId, studentId).orElse(null);
-    if (existing != null) {
-      return Map.of(
-          "message", "Student already checked in",
-          "attendanceId", existing.getId(),
-          "status", existing.getStatus()
-      );
-    }
-
     Attendance a = new Attendance();
     a.setSessionId(sessionId);
     a.setStudentId(studentId);
@@ -206,14 +269,34 @@ public class TeacherService {
     // Điểm danh thủ công sẽ được tính như có mặt đúng giờ.
     a.setStatus(AttendanceStatus.ON_TIME);
 
-    Attendance saved = attendanceRepo.save(a);
+    // 1 câu INSERT ... ON CONFLICT DO NOTHING: chỉ đọc lại bản ghi cũ khi thực sự trùng
+    Long id = attendanceInsertRepo.insertIfAbsent(a);
+    if (id == null) {
+      var existing = attendanceRepo.findBySessionIdAndStudentId(sessionId, studentId).orElse(null);
+      if (existing != null) {
+        return Map.of(
+            "message", "Student already checked in",
+            "attendanceId", existing.getId(),
+            "status", existing.getStatus()
+        );
+      }
+      throw new ApiException(HttpStatus.CONFLICT, "Student already checked in");
+    }
+    a.setId(id);
+
+    afterCommit(() -> {
+      liveCounters.recorded(a.getSessionId(), a.getStatus());
+      versions.attendanceChanged(cls.getId(), a.getSessionId());
+      liveFeed.publish(new AttendanceDtos.CheckInAttendance(
+          a.getId(), a.getSessionId(), a.getStudentId(), a.getCheckInTime(), a.getPhotoUrl(), a.getStatus()));
+    });
 
     return new LinkedHashMap<>(Map.of(
         "message", "Manual check-in saved",
-        "attendanceId", saved.getId(),
-        "studentId", saved.getStudentId(),
-        "sessionId", saved.getSessionId(),
-        "status", saved.getStatus()
+        "attendanceId", a.getId(),
+        "studentId", a.getStudentId(),
+        "sessionId", a.getSessionId(),
+        "status", a.getStatus()
     ));
   }
 
@@ -222,10 +305,7 @@ public class TeacherService {
    * Query repository trả về: (ClassMember cm, fullName, email)
    */
   public List<Map<String, Object>> getClassMembers(Long classId) {
-    ClassEntity cls = classRepo.findById(classId).orElse(null);
-    if (cls == null || !Objects.equals(cls.getTeacherId(), currentTeacherId())) {
-      throw new ApiException(HttpStatus.NOT_FOUND, "Class not found");
-    }
+    ClassEntity cls = ownedClass(classId);
 
     List<Object[]> rows = classMemberRepo.findMembersByClass(classId);
     List<Map<String, Object>> out = new ArrayList<>();
@@ -250,10 +330,7 @@ public class TeacherService {
 
   /** Tạo một buổi học (session) cho lớp. */
   public SessionEntity createSession(Long classId, TeacherDtos.CreateSessionRequest req) {
-    ClassEntity cls = classRepo.findById(classId).orElse(null);
-    if (cls == null || !Objects.equals(cls.getTeacherId(), currentTeacherId())) {
-      throw new ApiException(HttpStatus.NOT_FOUND, "Class not found");
-    }
+    ClassEntity cls = ownedClass(classId);
 
     String normTitle = normalizeName(req.title());
     if (sessionRepo.existsByClassIdAndNormalizedTitle(classId, normTitle)) {
@@ -272,38 +349,44 @@ public class TeacherService {
     s.setTeacherLng(null);
     s.setCreatedAt(LocalDateTime.now());
 
-    return sessionRepo.save(s);
+    s = sessionRepo.save(s);
+    versions.sessionsChanged(classId);
+    return s;
   }
 
   /** Lấy danh sách buổi học của lớp (mới nhất trước). */
   public List<SessionEntity> getSessions(Long classId) {
-    ClassEntity cls = classRepo.findById(classId).orElse(null);
-    if (cls == null || !Objects.equals(cls.getTeacherId(), currentTeacherId())) {
-      throw new ApiException(HttpStatus.NOT_FOUND, "Class not found");
-    }
+    ClassEntity cls = ownedClass(classId);
 
     return sessionRepo.findByClassIdOrderBySessionDateDesc(classId);
   }
 
   // Xóa thành viên khỏi lớp
+  @Transactional
   public Map<String, Object> removeMember(Long classId, Long memberId) {
-  ClassEntity cls = classRepo.findById(classId).orElse(null);
-  if (cls == null || !Objects.equals(cls.getTeacherId(), currentTeacherId())) {
-    throw new ApiException(HttpStatus.NOT_FOUND, "Class not found");
-  }
-  ClassMember cm = classMemberRepo.findById(memberId).orElse(null);
-  if (cm == null) {
-    throw new ApiException(HttpStatus.NOT_FOUND, "Member not found");
-  }
+    ownedClass(classId);
+    ClassMember cm = classMemberRepo.findById(memberId).orElse(null);
+    if (cm == null) {
+      throw new ApiException(HttpStatus.NOT_FOUND, "Member not found");
+    }
 
-  // Đảm bảo member này thuộc đúng lớp đang thao tác
-  if (!Objects.equals(cm.getClassId(), classId)) {
-    throw new ApiException(HttpStatus.BAD_REQUEST, "Member not in this class");
-  }
+    // Đảm bảo member này thuộc đúng lớp đang thao tác
+    if (!Objects.equals(cm.getClassId(), classId)) {
+      throw new ApiException(HttpStatus.BAD_REQUEST, "Member not in this class");
+    }
 
-  classMemberRepo.delete(cm);
-  return Map.of("message", "Removed");
-}
+    // Xoá member trước (flush ngay) rồi mới xoá dòng tổng hợp: check-in đang ghi giữ class_members FOR SHARE
+    // (AttendanceInsertRepository) nên xong trước; check-in đến sau thấy không còn là thành viên và bị bỏ qua.
+    classMemberRepo.delete(cm);
+    classMemberRepo.flush();
+    summaryJdbc.deleteStudent(classId, cm.getStudentId());
+
+    afterCommit(() -> {
+      rosterIndex.removed(classId, cm.getStudentId());
+      versions.membersChanged(classId, cm.getStudentId());
+    });
+    return Map.of("message", "Removed");
+  }
 
   /**
    * Mở session để sinh QR điểm danh.
@@ -311,15 +394,10 @@ public class TeacherService {
    * - tạo qrToken
    * - set thời gian hết hạn (qrTokenExpiresAt)
    * - lưu vị trí của giảng viên để check khoảng cách (tuỳ chọn)
+   * - bán kính / đa giác vùng điểm danh riêng cho buổi học (tuỳ chọn)
    */
   public Map<String, Object> openSession(Long sessionId, TeacherDtos.OpenSessionRequest req) {
-    SessionEntity session = sessionRepo.findById(sessionId).orElse(null);
-    if (session == null) throw new ApiException(HttpStatus.NOT_FOUND, "Session not found");
-
-    ClassEntity cls = classRepo.findById(session.getClassId()).orElse(null);
-    if (cls == null || !Objects.equals(cls.getTeacherId(), currentTeacherId())) {
-      throw new ApiException(HttpStatus.FORBIDDEN, "Forbidden");
-    }
+    SessionEntity session = ownedSession(sessionId).session();
 
     String qrToken = CodeUtil.randomToken(16);
 
@@ -332,8 +410,17 @@ public class TeacherService {
     session.setQrTokenExpiresAt(expiresAt);
     session.setTeacherLat(BigDecimal.valueOf(req.teacherLat()));
     session.setTeacherLng(BigDecimal.valueOf(req.teacherLng()));
+    session.setGeofenceRadiusMeters(req.radiusMeters());
+    session.setGeofencePolygon(req.polygon() == null ? null : Geofence.encodePolygon(
+        req.polygon().stream().map(p -> new Geofence.Point(p.lat(), p.lng())).toList()
+    ));
+
+    // Seed bộ đếm trước khi session nhận check-in
+    liveCounters.seed(session.getId(), session.getClassId());
 
     session = sessionRepo.save(session);
+    openSessions.register(session);
+    versions.sessionsChanged(session.getClassId());
 
     Map<String, Object> resp = new LinkedHashMap<>();
     resp.put("id", session.getId());
@@ -345,31 +432,98 @@ public class TeacherService {
     resp.put("qrTokenExpiresAt", session.getQrTokenExpiresAt());
     resp.put("teacherLat", session.getTeacherLat());
     resp.put("teacherLng", session.getTeacherLng());
+    resp.put("geofenceRadiusMeters", session.getGeofenceRadiusMeters() != null
+        ? session.getGeofenceRadiusMeters()
+        : openSessions.getDefaultRadiusMeters());
+    resp.put("geofencePolygon", session.getGeofencePolygon());
     resp.put("createdAt", session.getCreatedAt());
 
     // Payload dùng để FE sinh QR (scan ra được sessionId + qrToken)
     resp.put("qrPayload", Map.of(
         "sessionId", session.getId(),
-        "qrToken", session.getQrToken()
+        "qrToken", displayedQrToken(session.getId(), session.getQrToken())
     ));
+    resp.put("qrRotateSeconds", qrSigner.isRotating() ? qrSigner.getSlotSeconds() : null);
 
     return resp;
   }
 
-  /** Đóng session: không cho điểm danh nữa. */
-  public SessionEntity closeSession(Long sessionId) {
-    SessionEntity session = sessionRepo.findById(sessionId).orElse(null);
-    if (session == null) throw new ApiException(HttpStatus.NOT_FOUND, "Session not found");
+  /**
+   * Mã QR đang hiển thị của session OPEN.
+   * - QR xoay vòng: FE gọi lại sau refreshInMs để lấy mã của slot mới.
+   * - QR tĩnh: trả token lưu lúc mở session (refreshInMs = null).
+   */
+  public Map<String, Object> getCurrentQr(Long sessionId) {
+    SessionEntity session = ownedSession(sessionId).session();
 
-    ClassEntity cls = classRepo.findById(session.getClassId()).orElse(null);
-    if (cls == null || !Objects.equals(cls.getTeacherId(), currentTeacherId())) {
-      throw new ApiException(HttpStatus.FORBIDDEN, "Forbidden");
+    if (session.getStatus() != SessionStatus.OPEN || session.getQrToken() == null) {
+      throw new ApiException(HttpStatus.BAD_REQUEST, "Session is not open");
     }
 
+    Map<String, Object> resp = new LinkedHashMap<>();
+    resp.put("qrPayload", Map.of(
+        "sessionId", session.getId(),
+        "qrToken", displayedQrToken(session.getId(), session.getQrToken())
+    ));
+    resp.put("qrRotateSeconds", qrSigner.isRotating() ? qrSigner.getSlotSeconds() : null);
+    resp.put("refreshInMs", qrSigner.isRotating() ? qrSigner.millisUntilNextSlot() : null);
+    resp.put("qrTokenExpiresAt", session.getQrTokenExpiresAt());
+    return resp;
+  }
+
+  private String displayedQrToken(Long sessionId, String storedToken) {
+    return qrSigner.isRotating() ? qrSigner.issue(sessionId, storedToken) : storedToken;
+  }
+
+  /** Đóng session: không cho điểm danh nữa. */
+  public SessionEntity closeSession(Long sessionId) {
+    SessionEntity session = ownedSession(sessionId).session();
+
     session.setStatus(SessionStatus.CLOSED);
     session.setQrToken(null);
     session.setQrTokenExpiresAt(null);
-    return sessionRepo.save(session);
+    session = sessionRepo.save(session);
+    openSessions.evict(sessionId);
+    versions.sessionsChanged(session.getClassId());
+    liveCounters.reconcile(sessionId, session.getClassId());
+    liveFeed.closeSession(sessionId);
+    return session;
+  }
+
+  /**
+   * Số liệu nhanh của buổi học: sĩ số / đúng giờ / muộn / chưa điểm danh.
+   * Session OPEN đọc bộ đếm in-memory (không phụ thuộc sĩ số); session đã đóng đếm bằng 1 query GROUP BY.
+   */
+  public Map<String, Object> getSessionCounts(Long sessionId) {
+    SessionEntity session = ownedSession(sessionId).session();
+
+    boolean open = session.getStatus() == SessionStatus.OPEN;
+    SessionLiveCounters.Counts counts = open ? liveCounters.get(sessionId) : null;
+    if (counts == null && open) {
+      // app vừa khởi động lại trong lúc session đang mở -> seed lại từ DB
+      liveCounters.seed(sessionId, session.getClassId());
+      counts = liveCounters.get(sessionId);
+    }
+    if (counts == null) counts = liveCounters.countFromDb(sessionId, session.getClassId());
+
+    Map<String, Object> resp = new LinkedHashMap<>();
+    resp.put("sessionId", sessionId);
+    resp.put("status", session.getStatus());
+    resp.put("rosterSize", counts.rosterSize());
+    resp.put("onTime", counts.onTime());
+    resp.put("late", counts.late());
+    resp.put("absent", counts.absent());
+    resp.put("notYet", counts.notYet());
+    return resp;
+  }
+
+  /**
+   * Live feed điểm danh (SSE) của 1 buổi học: mỗi check-in mới được đẩy thành 1 sự kiện "attendance".
+   */
+  public SseEmitter subscribeSessionAttendance(Long sessionId) {
+    ownedSession(sessionId);
+
+    return liveFeed.subscribe(sessionId);
   }
 
   /**
@@ -377,37 +531,98 @@ public class TeacherService {
    * Query repository trả về: (Attendance a, fullName, email)
    */
   public List<Map<String, Object>> getSessionAttendance(Long sessionId) {
-    SessionEntity session = sessionRepo.findById(sessionId).orElse(null);
-    if (session == null) throw new ApiException(HttpStatus.NOT_FOUND, "Session not found");
-
-    ClassEntity cls = classRepo.findById(session.getClassId()).orElse(null);
-    if (cls == null || !Objects.equals(cls.getTeacherId(), currentTeacherId())) {
-      throw new ApiException(HttpStatus.FORBIDDEN, "Forbidden");
-    }
+    ownedSession(sessionId);
 
     List<Object[]> rows = attendanceRepo.findBySessionWithUser(sessionId);
     List<Map<String, Object>> out = new ArrayList<>();
 
+    for (Object[] r : rows) {
+      out.add(toAttendanceRow(r));
+    }
+
+    return out;
+  }
+
+  /**
+   * Delta điểm danh của 1 buổi học theo cursor (checkInTime, id).
+   * - cursor rỗng: từ đầu; trả về rows + nextCursor + hasMore.
+   * - nextCursor không vượt quá now - cursorSettle: bản ghi vừa ghi (hoặc write-behind chưa flush)
+   *   có thể mang checkInTime sớm hơn bản ghi đã đọc, nên phần "quá mới" sẽ được trả lại ở lần sau.
+   *   Client khử trùng theo studentId.
+   */
+  public Map<String, Object> getSessionAttendanceSince(Long sessionId, String cursor, int limit) {
+    ownedSession(sessionId);
+
+    int pageSize = Math.min(Math.max(limit, 1), MAX_DELTA_PAGE);
+    AttendanceCursor after = AttendanceCursor.decode(cursor);
+    // +1 dòng để biết còn trang sau hay không
+    PageRequest page = PageRequest.of(0, pageSize + 1);
+    List<Object[]> rows = after == null
+        ? attendanceRepo.findBySessionWithUserFirst(sessionId, page)
+        : attendanceRepo.findBySessionWithUserAfter(sessionId, after.checkInTime(), after.id(), page);
+
+    boolean hasMore = rows.size() > pageSize;
+    if (hasMore) rows = rows.subList(0, pageSize);
+
+    LocalDateTime settled = LocalDateTime.now().minus(cursorSettle);
+    AttendanceCursor next = after;
+    List<Map<String, Object>> out = new ArrayList<>(rows.size());
     for (Object[] r : rows) {
       Attendance a = (Attendance) r[0];
-      String fullName = String.valueOf(r[1]);
-      String email = String.valueOf(r[2]);
+      out.add(toAttendanceRow(r));
+      if (a.getCheckInTime() != null && !a.getCheckInTime().isAfter(settled)) {
+        next = new AttendanceCursor(a.getCheckInTime(), a.getId());
+      }
+    }
 
-      Map<String, Object> row = new LinkedHashMap<>();
-      row.put("id", a.getId());
-      row.put("sessionId", a.getSessionId());
-      row.put("studentId", a.getStudentId());
-      row.put("checkInTime", a.getCheckInTime());
-      row.put("gpsLat", a.getGpsLat());
-      row.put("gpsLng", a.getGpsLng());
-      row.put("photoUrl", a.getPhotoUrl());
-      row.put("status", a.getStatus());
-      row.put("fullName", fullName);
-      row.put("email", email);
-      out.add(row);
+    // Cả trang còn nằm trong cửa sổ settle (vd: >pageSize check-in trong 1 giây) -> cursor đứng yên.
+    // Báo hasMore=false để client không gọi lại đúng trang này liên tục; lần poll sau sẽ đọc tiếp.
+    if (Objects.equals(next, after)) hasMore = false;
+
+    Map<String, Object> resp = new LinkedHashMap<>();
+    resp.put("rows", out);
+    resp.put("nextCursor", next == null ? "" : next.encode());
+    resp.put("hasMore", hasMore);
+    return resp;
+  }
+
+  private static Map<String, Object> toAttendanceRow(Object[] r) {
+    Attendance a = (Attendance) r[0];
+    String fullName = String.valueOf(r[1]);
+    String email = String.valueOf(r[2]);
+
+    Map<String, Object> row = new LinkedHashMap<>();
+    row.put("id", a.getId());
+    row.put("sessionId", a.getSessionId());
+    row.put("studentId", a.getStudentId());
+    row.put("checkInTime", a.getCheckInTime());
+    row.put("gpsLat", a.getGpsLat());
+    row.put("gpsLng", a.getGpsLng());
+    row.put("photoUrl", a.getPhotoUrl());
+    row.put("status", a.getStatus());
+    row.put("fullName", fullName);
+    row.put("email", email);
+    return row;
+  }
+
+  /** Cursor (checkInTime, id) dạng chuỗi base64url, client coi như opaque. */
+  private record AttendanceCursor(LocalDateTime checkInTime, Long id) {
+    String encode() {
+      String raw = checkInTime + "_" + id;
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
     }
 
-    return out;
+    /** @return null nếu cursor rỗng (đọc từ đầu) */
+    static AttendanceCursor decode(String cursor) {
+      if (cursor == null || cursor.isBlank()) return null;
+      try {
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int sep = raw.lastIndexOf('_');
+        return new AttendanceCursor(LocalDateTime.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+      } catch (RuntimeException e) {
+        throw new ApiException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+      }
+    }
   }
 
   
@@ -416,13 +631,9 @@ public class TeacherService {
    * - Tổng hợp TẤT CẢ sinh viên trong lớp (kể cả chưa điểm danh).
    */
   public byte[] exportSessionAttendanceXlsx(Long sessionId) {
-    SessionEntity session = sessionRepo.findById(sessionId).orElse(null);
-    if (session == null) throw new ApiException(HttpStatus.NOT_FOUND, "Session not found");
-
-    ClassEntity cls = classRepo.findById(session.getClassId()).orElse(null);
-    if (cls == null || !Objects.equals(cls.getTeacherId(), currentTeacherId())) {
-      throw new ApiException(HttpStatus.FORBIDDEN, "Forbidden");
-    }
+    OwnedSession owned = ownedSession(sessionId);
+    SessionEntity session = owned.session();
+    ClassEntity cls = owned.cls();
 
     // 1) Danh sách tất cả sinh viên trong lớp
     List<Object[]> studentsRows = classMemberRepo.findStudentsByClass(cls.getId()); // [id, fullName, email]
@@ -502,142 +713,87 @@ public class TeacherService {
     }
   }
   /**
-   * Export báo cáo chuyên cần TỔNG HỢP theo LỚP ra Excel (.xlsx).
+   * Nạp dữ liệu export báo cáo chuyên cần TỔNG HỢP theo LỚP (.xlsx).
    * - Hàng: sinh viên
    * - Cột: từng buổi học (session) + tổng có mặt/vắng + tỷ lệ %
+   * Kiểm tra quyền + truy vấn xong trước khi controller bắt đầu stream file ({@link ClassAttendanceXlsxWriter}).
    */
-  public byte[] exportClassAttendanceSummaryXlsx(Long classId) {
+  public ClassAttendanceXlsxWriter.ClassSheet prepareClassAttendanceExport(Long classId) {
+    return loadClassAttendanceExport(requireOwnedClass(classId));
+  }
+
+  /** Lớp thuộc giảng viên hiện tại (404 / 403). */
+  public ClassEntity requireOwnedClass(Long classId) {
     ClassEntity cls = classRepo.findById(classId).orElse(null);
     if (cls == null) throw new ApiException(HttpStatus.NOT_FOUND, "Class not found");
     if (!Objects.equals(cls.getTeacherId(), currentTeacherId())) {
       throw new ApiException(HttpStatus.FORBIDDEN, "Forbidden");
     }
+    return cls;
+  }
 
-    // 1) Danh sách buổi học của lớp (cũ -> mới)
-    List<SessionEntity> sessions = sessionRepo.findByClassIdOrderBySessionDateAsc(classId);
-
-    // 2) Danh sách sinh viên trong lớp
-    List<Object[]> studentsRows = classMemberRepo.findStudentsByClass(classId); // [id, fullName, email]
-
-    // 3) Map điểm danh: sessionId -> (studentId -> status)
-    Map<Long, Map<Long, AttendanceStatus>> map = new HashMap<>();
-    for (SessionEntity s : sessions) {
-      Map<Long, AttendanceStatus> per = new HashMap<>();
-      for (Attendance a : attendanceRepo.findBySessionId(s.getId())) {
-        per.put(a.getStudentId(), a.getStatus());
-      }
-      map.put(s.getId(), per);
-    }
-
-    DateTimeFormatter df = DateTimeFormatter.ofPattern("dd/MM");
-    try (Workbook wb = new XSSFWorkbook()) {
-      Sheet sh = wb.createSheet("Summary");
-
-      // header style
-      Font headerFont = wb.createFont();
-      headerFont.setBold(true);
-      CellStyle headerStyle = wb.createCellStyle();
-      headerStyle.setFont(headerFont);
-      headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-      headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-      headerStyle.setBorderBottom(BorderStyle.THIN);
-      headerStyle.setBorderTop(BorderStyle.THIN);
-      headerStyle.setBorderLeft(BorderStyle.THIN);
-      headerStyle.setBorderRight(BorderStyle.THIN);
+  /**
+   * Lớp thuộc giảng viên hiện tại cho đường chỉ đọc: đi qua cache "classes" (404 cả khi không phải lớp của mình).
+   * Sửa / xoá lớp vẫn nạp thẳng từ DB bằng findByIdAndTeacherId để không sửa nhầm entity trong cache.
+   */
+  private ClassEntity ownedClass(Long classId) {
+    return classRepo.findById(classId)
+        .filter(c -> Objects.equals(c.getTeacherId(), currentTeacherId()))
+        .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "Class not found"));
+  }
 
-      int r = 0;
+  /**
+   * Kiểm tra quyền đọc lớp qua cache "classes" (404 như các hàm get*), dùng trước khi trả 304:
+   * ETag khớp không được để lộ lớp tồn tại hay số lần ghi cho người không sở hữu.
+   */
+  public void checkOwnedClass(Long classId) {
+    ownedClass(classId);
+  }
 
-      // Meta
-      Row meta1 = sh.createRow(r++);
-      meta1.createCell(0).setCellValue("Lớp:");
-      meta1.createCell(1).setCellValue(cls.getClassName() + " (" + cls.getCode() + ")");
-      Row meta2 = sh.createRow(r++);
-      meta2.createCell(0).setCellValue("Số buổi:");
-      meta2.createCell(1).setCellValue(sessions.size());
-      Row meta3 = sh.createRow(r++);
-      meta3.createCell(0).setCellValue("Xuất lúc:");
-      meta3.createCell(1).setCellValue(LocalDateTime.now().toString());
+  /** Buổi học thuộc lớp của giảng viên hiện tại (404 / 403). */
+  public SessionEntity requireOwnedSession(Long sessionId) {
+    return ownedSession(sessionId).session();
+  }
 
-      r++; // blank
+  /**
+   * Buổi học + lớp thuộc giảng viên hiện tại: 1 truy vấn JOIN thay vì 2 lần findById nối tiếp.
+   * Chỉ ở nhánh lỗi mới hỏi thêm existsById để giữ nguyên 404 (không có session) / 403 (không phải lớp của mình).
+   */
+  private OwnedSession ownedSession(Long sessionId) {
+    OwnedSession owned = sessionRepo.findOwnedByTeacher(sessionId, currentTeacherId()).orElse(null);
+    if (owned != null) return owned;
+    if (!sessionRepo.existsById(sessionId)) throw new ApiException(HttpStatus.NOT_FOUND, "Session not found");
+    throw new ApiException(HttpStatus.FORBIDDEN, "Forbidden");
+  }
 
-      // Header row
-      Row header = sh.createRow(r++);
-      int c = 0;
-      Cell h0 = header.createCell(c++); h0.setCellValue("Student ID"); h0.setCellStyle(headerStyle);
-      Cell h1 = header.createCell(c++); h1.setCellValue("Họ tên"); h1.setCellStyle(headerStyle);
-      Cell h2 = header.createCell(c++); h2.setCellValue("Email"); h2.setCellStyle(headerStyle);
-
-      // session columns
-      int idx = 1;
-      for (SessionEntity s : sessions) {
-        String label = "Buổi " + (idx++) + " (" + s.getSessionDate().format(df) + ") - " + s.getTitle();
-        Cell hc = header.createCell(c++);
-        hc.setCellValue(label);
-        hc.setCellStyle(headerStyle);
-      }
+  /**
+   * Nạp dữ liệu export theo id lớp, KHÔNG kiểm tra quyền
+   * (dùng cho export job chạy nền, quyền đã kiểm tra lúc submit).
+   */
+  public ClassAttendanceXlsxWriter.ClassSheet loadClassAttendanceExport(Long classId) {
+    ClassEntity cls = classRepo.findById(classId).orElse(null);
+    if (cls == null) throw new ApiException(HttpStatus.NOT_FOUND, "Class not found");
+    return loadClassAttendanceExport(cls);
+  }
 
-      Cell hPresent = header.createCell(c++); hPresent.setCellValue("Có mặt"); hPresent.setCellStyle(headerStyle);
-      Cell hAbsent = header.createCell(c++); hAbsent.setCellValue("Vắng"); hAbsent.setCellStyle(headerStyle);
-      Cell hRate = header.createCell(c++); hRate.setCellValue("Tỷ lệ %"); hRate.setCellStyle(headerStyle);
-
-      // Data rows
-      for (Object[] row : studentsRows) {
-        Long studentId = ((Number) row[0]).longValue();
-        String fullName = String.valueOf(row[1]);
-        String email = String.valueOf(row[2]);
-
-        Row rr = sh.createRow(r++);
-        int cc = 0;
-        rr.createCell(cc++).setCellValue(studentId);
-        rr.createCell(cc++).setCellValue(fullName);
-        rr.createCell(cc++).setCellValue(email);
-
-        int present = 0;
-        int absent = 0;
-
-        for (SessionEntity s : sessions) {
-          AttendanceStatus st = null;
-          Map<Long, AttendanceStatus> per = map.get(s.getId());
-          if (per != null) st = per.get(studentId);
-
-          // Mặc định không có record => ABSENT
-          String cellVal;
-          if (st == null || st == AttendanceStatus.ABSENT) {
-            cellVal = "A";
-            absent++;
-          } else if (st == AttendanceStatus.LATE) {
-            cellVal = "L";
-            present++;
-          } else { // ON_TIME
-            cellVal = "P";
-            present++;
-          }
-          rr.createCell(cc++).setCellValue(cellVal);
-        }
-
-        rr.createCell(cc++).setCellValue(present);
-        rr.createCell(cc++).setCellValue(absent);
-
-        double rate = sessions.isEmpty() ? 0.0 : (present * 100.0 / sessions.size());
-        rr.createCell(cc++).setCellValue(Math.round(rate * 100.0) / 100.0);
-      }
+  private ClassAttendanceXlsxWriter.ClassSheet loadClassAttendanceExport(ClassEntity cls) {
+    Long classId = cls.getId();
 
-      // autosize
-      int totalCols = 3 + sessions.size() + 3;
-      for (int i = 0; i < totalCols; i++) sh.autoSizeColumn(i);
+    // 1) Danh sách buổi học của lớp (cũ -> mới)
+    List<SessionEntity> sessions = sessionRepo.findByClassIdOrderBySessionDateAsc(classId);
 
-      // legend
-      r++;
-      Row legend = sh.createRow(r++);
-      legend.createCell(0).setCellValue("Chú thích:");
-      legend.createCell(1).setCellValue("P = Có mặt, L = Đi trễ, A = Vắng");
+    // 2) Danh sách sinh viên trong lớp + tổng có mặt từ bảng tổng hợp
+    List<StudentAttendanceCounts> studentsRows = summaryRepo.findReportByClass(classId);
 
-      java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
-      wb.write(out);
-      return out.toByteArray();
-    } catch (Exception e) {
-      throw new ApiException(HttpStatus.INTERNAL_SERVER_ERROR, "Export failed");
+    // 3) Trạng thái của cả lớp trong 1 truy vấn -> ma trận bitset (hàng = sinh viên, cột = buổi học)
+    AttendanceMatrix matrix = new AttendanceMatrix(
+        studentsRows.stream().map(StudentAttendanceCounts::studentId).toList(),
+        sessions.stream().map(SessionEntity::getId).toList());
+    for (Object[] r : attendanceRepo.findStatusesByClass(classId)) { // [sessionId, studentId, status]
+      matrix.set((Long) r[1], (Long) r[0], (AttendanceStatus) r[2]);
     }
+
+    return new ClassAttendanceXlsxWriter.ClassSheet(cls, sessions, studentsRows, matrix);
   }
 
 
@@ -647,85 +803,37 @@ public class TeacherService {
    * - thống kê theo từng sinh viên: onTime/late/present/absent
    */
   public Map<String, Object> getClassReport(Long classId) {
-    ClassEntity cls = classRepo.findById(classId).orElse(null);
-    if (cls == null || !Objects.equals(cls.getTeacherId(), currentTeacherId())) {
-      throw new ApiException(HttpStatus.NOT_FOUND, "Class not found");
-    }
+    ClassEntity cls = ownedClass(classId);
 
-    // 1) Danh sách sinh viên trong lớp
-    List<Object[]> studentsRows = classMemberRepo.findStudentsByClass(classId);
-    record StudentRow(Long studentId, String fullName, String email) {}
-
-    List<StudentRow> students = new ArrayList<>();
-    for (Object[] r : studentsRows) {
-      students.add(new StudentRow(
-          ((Number) r[0]).longValue(),
-          String.valueOf(r[1]),
-          String.valueOf(r[2])
-      ));
-    }
-
-    // 2) Danh sách buổi học
+    // 1) Danh sách buổi học
     List<SessionEntity> sessions = sessionRepo.findByClassIdOrderBySessionDateDesc(classId);
     int totalSessions = sessions.size();
 
-    // 3) Dữ liệu điểm danh theo lớp
-    List<Object[]> attendanceRows = attendanceRepo.findByClassWithSession(classId);
-
-    // perStudent[studentId] -> map thống kê
-    Map<Long, Map<String, Object>> perStudent = new LinkedHashMap<>();
-    for (StudentRow s : students) {
-      perStudent.put(s.studentId(), new LinkedHashMap<>(Map.of(
-          "studentId", s.studentId(),
-          "fullName", s.fullName(),
-          "email", s.email(),
-          "totalSessions", totalSessions,
-          "onTime", 0,
-          "late", 0,
-          "present", 0,
-          "absent", 0
-      )));
-    }
-
-    // attendanceMap[sessionId][studentId] = status
-    Map<Long, Map<Long, String>> attendanceMap = new HashMap<>();
-
-    for (Object[] r : attendanceRows) {
-      Attendance a = (Attendance) r[0];
-      Long sessionId = a.getSessionId();
-      Long studentId = a.getStudentId();
-      String status = (a.getStatus() == null) ? null : a.getStatus().name();
-
-      attendanceMap.computeIfAbsent(sessionId, k -> new HashMap<>()).put(studentId, status);
-
-      Map<String, Object> ps = perStudent.get(studentId);
-      if (ps == null) continue;
-
-      // present = có record điểm danh
-      ps.put("present", ((Number) ps.get("present")).intValue() + 1);
-
-      if (AttendanceStatus.ON_TIME.name().equals(status)) {
-        ps.put("onTime", ((Number) ps.get("onTime")).intValue() + 1);
-      } else if (AttendanceStatus.LATE.name().equals(status)) {
-        ps.put("late", ((Number) ps.get("late")).intValue() + 1);
-      }
-    }
-
-    // absent = totalSessions - present
-    for (Map<String, Object> ps : perStudent.values()) {
-      int present = ((Number) ps.get("present")).intValue();
-      ps.put("absent", Math.max(totalSessions - present, 0));
+    // 2) Thống kê theo sinh viên: đọc bảng tổng hợp, mỗi sinh viên 1 dòng
+    List<StudentAttendanceCounts> counts = summaryRepo.findReportByClass(classId);
+
+    List<TeacherDtos.ReportStudent> students = new ArrayList<>(counts.size());
+    List<TeacherDtos.ReportStudentStats> perStudent = new ArrayList<>(counts.size());
+    for (StudentAttendanceCounts c : counts) {
+      long present = c.present();
+      students.add(new TeacherDtos.ReportStudent(c.studentId(), c.fullName(), c.email()));
+      perStudent.add(new TeacherDtos.ReportStudentStats(
+          c.studentId(),
+          c.fullName(),
+          c.email(),
+          totalSessions,
+          c.onTime(),
+          c.late(),
+          present,
+          Math.max(totalSessions - present, 0) // absent = totalSessions - present
+      ));
     }
 
     Map<String, Object> resp = new LinkedHashMap<>();
     resp.put("class", cls);
     resp.put("sessions", sessions);
-    resp.put("students", students.stream().map(s -> Map.of(
-        "studentId", s.studentId(),
-        "fullName", s.fullName(),
-        "email", s.email()
-    )).toList());
-    resp.put("perStudent", perStudent.values());
+    resp.put("students", students);
+    resp.put("perStudent", perStudent);
 
     return resp;
   }
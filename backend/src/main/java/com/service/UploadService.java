@@ -31,9 +31,24 @@ public class UploadService {
   }
 
   public Map<String, Object> uploadPhoto(MultipartFile file) {
+    requirePhoto(file);
+    return Map.of("photoUrl", storePhoto(file));
+  }
+
+  /** Kiểm tra file ảnh có nội dung (gọi trước khi validate check-in để fail sớm). */
+  public void requirePhoto(MultipartFile file) {
     if (file == null || file.isEmpty()) {
       throw new ApiException(HttpStatus.BAD_REQUEST, "No file uploaded");
     }
+  }
+
+  /**
+   * Lưu ảnh vào thư mục upload.
+   * transferTo chuyển thẳng file tạm của multipart (không đọc toàn bộ vào heap).
+   * @return đường dẫn dạng /uploads/...
+   */
+  public String storePhoto(MultipartFile file) {
+    requirePhoto(file);
 
     String original = StringUtils.cleanPath(file.getOriginalFilename() == null ? "photo" : file.getOriginalFilename());
     String ext = "";
@@ -41,7 +56,7 @@ public class UploadService {
     if (idx >= 0) ext = original.substring(idx);
 
     String filename = UUID.randomUUID() + ext;
-    Path uploadDir = Path.of(props.getUpload().getDir()).toAbsolutePath().normalize();
+    Path uploadDir = uploadDir();
     Path dest = uploadDir.resolve(filename);
 
     try {
@@ -51,7 +66,23 @@ public class UploadService {
       throw new ApiException(HttpStatus.INTERNAL_SERVER_ERROR, "Upload failed");
     }
 
-    String photoUrl = "/uploads/" + filename;
-    return Map.of("photoUrl", photoUrl);
+    return "/uploads/" + filename;
+  }
+
+  /** Xoá ảnh đã lưu (vd: check-in bị từ chối sau khi đã lưu ảnh). Lỗi xoá được bỏ qua. */
+  public void deletePhoto(String photoUrl) {
+    if (photoUrl == null || !photoUrl.startsWith("/uploads/")) return;
+    Path uploadDir = uploadDir();
+    Path file = uploadDir.resolve(photoUrl.substring("/uploads/".length())).normalize();
+    if (!file.startsWith(uploadDir)) return;
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException ignored) {
+      // file mồ côi vô hại, không làm hỏng response
+    }
+  }
+
+  private Path uploadDir() {
+    return Path.of(props.getUpload().getDir()).toAbsolutePath().normalize();
   }
 }
@@ -0,0 +1,97 @@
+package com.util;
+
+import com.domain.enums.AttendanceStatus;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ma trận điểm danh sinh viên x buổi học dạng bitset (cho báo cáo / export theo lớp).
+ *
+ * - studentId / sessionId được đánh lại chỉ số liên tục 0..n-1 theo thứ tự truyền vào.
+ * - Mỗi ô chỉ tốn 2 bit: present (ON_TIME hoặc LATE) và late (chỉ LATE).
+ *   Không có bản ghi / ABSENT = cả 2 bit đều 0.
+ * - Mỗi sinh viên là 1 dải long[] liên tiếp -> tổng theo hàng = Long.bitCount trên từng word
+ *   (intrinsic POPCNT của JIT).
+ */
+public final class AttendanceMatrix {
+
+  private final Map<Long, Integer> rowIndex;
+  private final Map<Long, Integer> colIndex;
+  private final int rows;
+  private final int cols;
+  private final int words;
+  private final long[] present;
+  private final long[] late;
+
+  public AttendanceMatrix(List<Long> studentIds, List<Long> sessionIds) {
+    this.rows = studentIds.size();
+    this.cols = sessionIds.size();
+    this.rowIndex = index(studentIds);
+    this.colIndex = index(sessionIds);
+    this.words = (cols + 63) >>> 6;
+    this.present = new long[rows * words];
+    this.late = new long[rows * words];
+  }
+
+  private static Map<Long, Integer> index(List<Long> ids) {
+    Map<Long, Integer> m = new HashMap<>(ids.size() * 2);
+    for (int i = 0; i < ids.size(); i++) m.put(ids.get(i), i);
+    return m;
+  }
+
+  /**
+   * Ghi trạng thái 1 ô. Sinh viên / buổi học không có trong ma trận (vd: đã rời lớp) thì bỏ qua.
+   * @return true nếu ô thuộc ma trận
+   */
+  public boolean set(Long studentId, Long sessionId, AttendanceStatus status) {
+    Integer r = rowIndex.get(studentId);
+    Integer c = colIndex.get(sessionId);
+    if (r == null || c == null) return false;
+
+    int w = r * words + (c >>> 6);
+    long bit = 1L << c; // shift của long chỉ dùng 6 bit thấp
+    present[w] &= ~bit;
+    late[w] &= ~bit;
+    if (status == AttendanceStatus.ON_TIME || status == AttendanceStatus.LATE) present[w] |= bit;
+    if (status == AttendanceStatus.LATE) late[w] |= bit;
+    return true;
+  }
+
+  public int rows() {
+    return rows;
+  }
+
+  public int cols() {
+    return cols;
+  }
+
+  public boolean isPresent(int row, int col) {
+    return (present[row * words + (col >>> 6)] & (1L << col)) != 0;
+  }
+
+  public boolean isLate(int row, int col) {
+    return (late[row * words + (col >>> 6)] & (1L << col)) != 0;
+  }
+
+  /** Số buổi có mặt (đúng giờ + trễ) của sinh viên ở hàng row. */
+  public int presentCount(int row) {
+    return popcount(present, row);
+  }
+
+  public int lateCount(int row) {
+    return popcount(late, row);
+  }
+
+  public int onTimeCount(int row) {
+    return presentCount(row) - lateCount(row);
+  }
+
+  private int popcount(long[] bits, int row) {
+    int from = row * words;
+    int n = 0;
+    for (int i = from; i < from + words; i++) n += Long.bitCount(bits[i]);
+    return n;
+  }
+}
@@ -0,0 +1,200 @@
+package com.util;
+
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache in-memory cho Spring Cache: giới hạn số phần tử (LRU) + TTL tính từ lúc ghi.
+ *
+ * - Không lưu null: entity không tồn tại thì lần sau vẫn hỏi DB.
+ * - Khoá ReentrantLock (không synchronized) để không pin virtual thread; loader chạy ngoài khoá.
+ * - Evict trong transaction: xoá ngay VÀ xoá lại sau commit. Nếu chỉ xoá trước commit, 1 request chen
+ *   giữa có thể đọc lại bản cũ từ DB và nạp ngược vào cache (cùng lý do với TeacherService.afterCommit).
+ * - Đếm hit / miss / put / eviction cho metric cache.* (xem CacheConfig).
+ */
+public class BoundedTtlCache extends AbstractValueAdaptingCache {
+
+  private record Entry(Object value, long expiresAt) {}
+
+  private final String name;
+  private final int maxSize;
+  private final long ttlNanos;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final LinkedHashMap<Object, Entry> entries;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder puts = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public BoundedTtlCache(String name, int maxSize, Duration ttl) {
+    super(false);
+    this.name = name;
+    this.maxSize = Math.max(maxSize, 1);
+    this.ttlNanos = Math.max(ttl.toNanos(), 1);
+    // accessOrder = true -> phần tử đầu là phần tử lâu nhất chưa được đọc
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+        if (size() <= BoundedTtlCache.this.maxSize) return false;
+        evictions.increment();
+        return true;
+      }
+    };
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public Object getNativeCache() {
+    return this;
+  }
+
+  @Override
+  protected Object lookup(Object key) {
+    lock.lock();
+    try {
+      Entry e = entries.get(key);
+      if (e != null && System.nanoTime() - e.expiresAt() >= 0) {
+        entries.remove(key);
+        evictions.increment();
+        e = null;
+      }
+      if (e == null) {
+        misses.increment();
+        return null;
+      }
+      hits.increment();
+      return e.value();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Callable<T> valueLoader) {
+    Object stored = lookup(key);
+    if (stored != null) return (T) fromStoreValue(stored);
+    T value;
+    try {
+      value = valueLoader.call();
+    } catch (Exception e) {
+      throw new ValueRetrievalException(key, valueLoader, e);
+    }
+    if (value != null) put(key, value);
+    return value;
+  }
+
+  @Override
+  public void put(Object key, Object value) {
+    Entry e = new Entry(toStoreValue(value), System.nanoTime() + ttlNanos);
+    lock.lock();
+    try {
+      entries.put(key, e);
+      puts.increment();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public ValueWrapper putIfAbsent(Object key, Object value) {
+    Object existing = lookup(key);
+    if (existing != null) return toValueWrapper(existing);
+    put(key, value);
+    return null;
+  }
+
+  @Override
+  public void evict(Object key) {
+    evictIfPresent(key);
+  }
+
+  @Override
+  public boolean evictIfPresent(Object key) {
+    afterCommit(() -> remove(key));
+    return remove(key);
+  }
+
+  @Override
+  public void clear() {
+    afterCommit(this::removeAll);
+    removeAll();
+  }
+
+  @Override
+  public boolean invalidate() {
+    return removeAll();
+  }
+
+  private boolean remove(Object key) {
+    lock.lock();
+    try {
+      return entries.remove(key) != null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean removeAll() {
+    lock.lock();
+    try {
+      boolean any = !entries.isEmpty();
+      entries.clear();
+      return any;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static void afterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        action.run();
+      }
+    });
+  }
+
+  public long size() {
+    lock.lock();
+    try {
+      return entries.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int maxSize() {
+    return maxSize;
+  }
+
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  public long missCount() {
+    return misses.sum();
+  }
+
+  public long putCount() {
+    return puts.sum();
+  }
+
+  public long evictionCount() {
+    return evictions.sum();
+  }
+}
@@ -0,0 +1,45 @@
+package com.util;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.function.Supplier;
+
+/**
+ * GET có điều kiện (ETag / If-None-Match).
+ *
+ * ETag được tính TRƯỚC khi đọc dữ liệu: nếu có ghi xen giữa thì lần sau ETag khác -> client tải lại,
+ * không bao giờ giữ dữ liệu cũ với ETag mới.
+ *
+ * Caller phải kiểm tra quyền TRƯỚC khi gọi respond: 304 không chạy body nên không có kiểm tra nào khác.
+ *
+ * Cache-Control "private, no-cache": trình duyệt được giữ bản sao nhưng phải hỏi lại server mỗi lần
+ * (đặt sẵn header để Spring Security không ghi đè bằng no-store).
+ */
+public final class ConditionalGet {
+
+  private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+  private ConditionalGet() {}
+
+  public static <T> ResponseEntity<T> respond(WebRequest request, String etag, Supplier<T> body) {
+    if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATE).build();
+    }
+    return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATE).body(body.get());
+  }
+
+  private static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null || ifNoneMatch.isBlank()) return false;
+    for (String candidate : ifNoneMatch.split(",")) {
+      String c = candidate.trim();
+      if (c.startsWith("W/")) c = c.substring(2);
+      // Không nhận "*": ETag luôn phải là cái server đã trả cho chính người dùng này
+      if (c.equals(etag)) return true;
+    }
+    return false;
+  }
+}
@@ -0,0 +1,56 @@
+package com.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Gửi file trên đĩa về client không qua heap.
+ *
+ * - Tomcat NIO hỗ trợ sendfile: chỉ đặt attribute, Tomcat tự gửi bằng sendfile() của kernel (zero-copy)
+ *   sau khi controller trả về.
+ * - Không hỗ trợ (connector khác / bật nén response): FileChannel.transferTo sang output stream.
+ */
+public final class FileDownload {
+
+  private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+  private FileDownload() {}
+
+  public static void send(HttpServletRequest request, HttpServletResponse response,
+                          Path file, String filename, String contentType) throws IOException {
+    long size = Files.size(file);
+
+    response.setContentType(contentType);
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+        ContentDisposition.attachment().filename(filename, StandardCharsets.UTF_8).build().toString());
+    response.setContentLengthLong(size);
+
+    if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+      request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+      request.setAttribute(SENDFILE_START, 0L);
+      request.setAttribute(SENDFILE_END, size);
+      return;
+    }
+
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      var out = Channels.newChannel(response.getOutputStream());
+      long pos = 0;
+      while (pos < size) {
+        pos += ch.transferTo(pos, size - pos, out);
+      }
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package com.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Vùng điểm danh (geofence) của 1 buổi học, tính sẵn khi mở session.
+ *
+ * - Hình tròn: tâm = vị trí giảng viên, bán kính radiusMeters.
+ * - Đa giác (tuỳ chọn, cho giảng đường lớn): danh sách đỉnh lat/lng, thay thế kiểm tra bán kính.
+ *
+ * Kiểm tra 1 điểm:
+ * 1) Prefilter equirectangular (1 phép nhân cos đã tính sẵn, không gọi hàm lượng giác).
+ *    Xa hẳn/gần hẳn so với biên -> quyết định luôn.
+ * 2) Chỉ khi nằm sát biên (± BOUNDARY_MARGIN) mới tính haversine đầy đủ.
+ * Đa giác được chiếu sẵn sang hệ toạ độ phẳng (mét) quanh tâm -> ray casting thuần cộng/nhân.
+ */
+public final class Geofence {
+
+  private static final double EARTH_RADIUS_M = 6371000.0;
+  private static final double DEG_TO_RAD = Math.PI / 180.0;
+
+  /** Sai số tương đối tối đa của equirectangular ở khoảng cách vài km là << 1%. */
+  private static final double BOUNDARY_MARGIN = 0.01;
+
+  private final double centerLat;
+  private final double centerLng;
+  private final double radiusMeters;
+
+  // Tính sẵn cho prefilter
+  private final double metersPerDegLat;
+  private final double metersPerDegLng;
+  private final double acceptBelowSq;
+  private final double rejectAboveSq;
+
+  // Đa giác (toạ độ phẳng theo mét, gốc = tâm); null nếu không dùng
+  private final double[] polyX;
+  private final double[] polyY;
+  private final double minX, maxX, minY, maxY;
+
+  /** Kết quả kiểm tra: inside + khoảng cách tới tâm (m). */
+  public record Result(boolean inside, double distanceMeters) {}
+
+  /** Đỉnh đa giác. */
+  public record Point(double lat, double lng) {}
+
+  private Geofence(double centerLat, double centerLng, double radiusMeters, List<Point> polygon) {
+    this.centerLat = centerLat;
+    this.centerLng = centerLng;
+    this.radiusMeters = radiusMeters;
+
+    this.metersPerDegLat = EARTH_RADIUS_M * DEG_TO_RAD;
+    this.metersPerDegLng = EARTH_RADIUS_M * DEG_TO_RAD * Math.cos(centerLat * DEG_TO_RAD);
+
+    double lo = radiusMeters * (1 - BOUNDARY_MARGIN);
+    double hi = radiusMeters * (1 + BOUNDARY_MARGIN);
+    this.acceptBelowSq = lo * lo;
+    this.rejectAboveSq = hi * hi;
+
+    if (polygon != null && polygon.size() >= 3) {
+      int n = polygon.size();
+      polyX = new double[n];
+      polyY = new double[n];
+      double mnX = Double.MAX_VALUE, mxX = -Double.MAX_VALUE, mnY = Double.MAX_VALUE, mxY = -Double.MAX_VALUE;
+      for (int i = 0; i < n; i++) {
+        Point p = polygon.get(i);
+        polyX[i] = (p.lng() - centerLng) * metersPerDegLng;
+        polyY[i] = (p.lat() - centerLat) * metersPerDegLat;
+        mnX = Math.min(mnX, polyX[i]);
+        mxX = Math.max(mxX, polyX[i]);
+        mnY = Math.min(mnY, polyY[i]);
+        mxY = Math.max(mxY, polyY[i]);
+      }
+      minX = mnX; maxX = mxX; minY = mnY; maxY = mxY;
+    } else {
+      polyX = null;
+      polyY = null;
+      minX = maxX = minY = maxY = 0;
+    }
+  }
+
+  /** Geofence hình tròn. */
+  public static Geofence circle(double centerLat, double centerLng, double radiusMeters) {
+    return new Geofence(centerLat, centerLng, radiusMeters, null);
+  }
+
+  /** Geofence đa giác (radiusMeters chỉ dùng để hiển thị / làm fallback khi đa giác không hợp lệ). */
+  public static Geofence polygon(double centerLat, double centerLng, double radiusMeters, List<Point> polygon) {
+    return new Geofence(centerLat, centerLng, radiusMeters, polygon);
+  }
+
+  public double getRadiusMeters() {
+    return radiusMeters;
+  }
+
+  public boolean hasPolygon() {
+    return polyX != null;
+  }
+
+  public Result check(double lat, double lng) {
+    double dx = (lng - centerLng) * metersPerDegLng;
+    double dy = (lat - centerLat) * metersPerDegLat;
+    double planarSq = dx * dx + dy * dy;
+
+    if (polyX != null) {
+      boolean inside = dx >= minX && dx <= maxX && dy >= minY && dy <= maxY && containsPlanar(dx, dy);
+      return new Result(inside, Math.sqrt(planarSq));
+    }
+
+    if (planarSq <= acceptBelowSq) return new Result(true, Math.sqrt(planarSq));
+    if (planarSq >= rejectAboveSq) return new Result(false, Math.sqrt(planarSq));
+
+    // Sát biên: tính chính xác
+    double d = haversine(centerLat, centerLng, lat, lng);
+    return new Result(d <= radiusMeters, d);
+  }
+
+  /** Ray casting trên toạ độ phẳng. */
+  private boolean containsPlanar(double x, double y) {
+    boolean inside = false;
+    int n = polyX.length;
+    for (int i = 0, j = n - 1; i < n; j = i++) {
+      double yi = polyY[i], yj = polyY[j];
+      if ((yi > y) != (yj > y)) {
+        double xCross = polyX[i] + (y - yi) * (polyX[j] - polyX[i]) / (yj - yi);
+        if (x < xCross) inside = !inside;
+      }
+    }
+    return inside;
+  }
+
+  public static double haversine(double lat1, double lng1, double lat2, double lng2) {
+    double dLat = (lat2 - lat1) * DEG_TO_RAD;
+    double dLng = (lng2 - lng1) * DEG_TO_RAD;
+    double sinLat = Math.sin(dLat / 2);
+    double sinLng = Math.sin(dLng / 2);
+    double a = sinLat * sinLat
+        + Math.cos(lat1 * DEG_TO_RAD) * Math.cos(lat2 * DEG_TO_RAD) * sinLng * sinLng;
+    return EARTH_RADIUS_M * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+  }
+
+  // =========================
+  // Lưu đa giác dạng text: "lat,lng;lat,lng;..."
+  // =========================
+
+  public static String encodePolygon(List<Point> polygon) {
+    if (polygon == null || polygon.isEmpty()) return null;
+    StringBuilder sb = new StringBuilder(polygon.size() * 24);
+    for (Point p : polygon) {
+      if (sb.length() > 0) sb.append(';');
+      sb.append(p.lat()).append(',').append(p.lng());
+    }
+    return sb.toString();
+  }
+
+  /** @return danh sách đỉnh, hoặc null nếu chuỗi rỗng / sai định dạng */
+  public static List<Point> decodePolygon(String encoded) {
+    if (encoded == null || encoded.isBlank()) return null;
+    List<Point> out = new ArrayList<>();
+    try {
+      for (String pair : encoded.split(";")) {
+        int comma = pair.indexOf(',');
+        if (comma < 0) return null;
+        out.add(new Point(
+            Double.parseDouble(pair.substring(0, comma).trim()),
+            Double.parseDouble(pair.substring(comma + 1).trim())
+        ));
+      }
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    return out.size() >= 3 ? out : null;
+  }
+}
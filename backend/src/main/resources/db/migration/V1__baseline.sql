@@ -0,0 +1,77 @@
+-- Baseline: schema PostgreSQL hiện tại (trước đây do Hibernate ddl-auto=update tạo).
+-- Dùng IF NOT EXISTS để chạy được cả trên DB mới lẫn DB đã được ddl-auto tạo sẵn.
+
+CREATE TABLE IF NOT EXISTS users (
+  id            bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  full_name     varchar(255) NOT NULL,
+  email         varchar(255) NOT NULL UNIQUE,
+  password_hash varchar(255),
+  role          varchar(255) NOT NULL CHECK (role IN ('TEACHER', 'STUDENT')),
+  google_id     varchar(255),
+  created_at    timestamp(6) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS classes (
+  id              bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  class_name      varchar(255) NOT NULL,
+  normalized_name varchar(255) NOT NULL,
+  code            varchar(255) NOT NULL UNIQUE,
+  teacher_id      bigint NOT NULL,
+  created_at      timestamp(6) NOT NULL,
+  CONSTRAINT uq_teacher_classname_norm UNIQUE (teacher_id, normalized_name)
+);
+
+CREATE TABLE IF NOT EXISTS class_members (
+  id         bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  class_id   bigint NOT NULL,
+  student_id bigint NOT NULL,
+  joined_at  timestamp(6) NOT NULL,
+  CONSTRAINT uq_class_student UNIQUE (class_id, student_id)
+);
+
+CREATE TABLE IF NOT EXISTS sessions (
+  id                     bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  class_id               bigint NOT NULL,
+  title                  varchar(255) NOT NULL,
+  normalized_title       varchar(255) NOT NULL,
+  session_date           timestamp(6) NOT NULL,
+  status                 varchar(255) NOT NULL CHECK (status IN ('OPEN', 'CLOSED')),
+  qr_token               varchar(255),
+  qr_token_expires_at    timestamp(6),
+  teacher_lat            numeric(10, 7),
+  teacher_lng            numeric(10, 7),
+  geofence_radius_meters float(53),
+  geofence_polygon       varchar(4000),
+  created_at             timestamp(6) NOT NULL,
+  CONSTRAINT uq_class_sessiontitle_norm UNIQUE (class_id, normalized_title)
+);
+
+-- Cột thêm sau (geofence theo buổi học) cho DB cũ
+ALTER TABLE sessions ADD COLUMN IF NOT EXISTS geofence_radius_meters float(53);
+ALTER TABLE sessions ADD COLUMN IF NOT EXISTS geofence_polygon varchar(4000);
+
+CREATE TABLE IF NOT EXISTS attendance (
+  id            bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  session_id    bigint NOT NULL,
+  student_id    bigint NOT NULL,
+  check_in_time timestamp(6),
+  gps_lat       numeric(10, 7),
+  gps_lng       numeric(10, 7),
+  photo_url     varchar(1024),
+  status        varchar(255) NOT NULL CHECK (status IN ('ON_TIME', 'LATE', 'ABSENT')),
+  CONSTRAINT uq_session_student UNIQUE (session_id, student_id)
+);
+
+-- Đọc delta theo cursor (check_in_time, id) trong 1 session
+CREATE INDEX IF NOT EXISTS idx_attendance_session_time_id ON attendance (session_id, check_in_time, id);
+
+CREATE TABLE IF NOT EXISTS attendance_summary (
+  id            bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  class_id      bigint NOT NULL,
+  student_id    bigint NOT NULL,
+  on_time       bigint NOT NULL,
+  late          bigint NOT NULL,
+  absent_count  bigint NOT NULL,
+  last_check_in timestamp(6),
+  CONSTRAINT uq_summary_class_student UNIQUE (class_id, student_id)
+);
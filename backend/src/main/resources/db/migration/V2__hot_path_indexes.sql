@@ -0,0 +1,13 @@
+-- Index cho các truy vấn đọc nhiều (lọc + sắp xếp bằng index, không sort/seq scan)
+
+-- findStudentHistoryInClass, lịch sử điểm danh của sinh viên
+CREATE INDEX IF NOT EXISTS idx_attendance_student_session ON attendance (student_id, session_id);
+
+-- findByClassIdOrderBySessionDateAsc/Desc
+CREATE INDEX IF NOT EXISTS idx_sessions_class_date ON sessions (class_id, session_date);
+
+-- findJoinedClasses (lớp của 1 sinh viên)
+CREATE INDEX IF NOT EXISTS idx_class_members_student ON class_members (student_id, class_id);
+
+-- findByTeacherIdOrderByCreatedAtDesc
+CREATE INDEX IF NOT EXISTS idx_classes_teacher_created ON classes (teacher_id, created_at);
@@ -0,0 +1,28 @@
+-- Id của các bảng do Hibernate insert: sequence bước 50 (optimizer pooled-lo lấy 50 id cho 1 lần nextval)
+-- -> INSERT không cần đọc lại id sinh bởi DB, Hibernate gom được JDBC batch.
+-- Cột id vẫn có DEFAULT nextval(...) nên INSERT bằng SQL thuần không đụng id của Hibernate.
+-- attendance / attendance_summary giữ identity: chỉ được ghi bằng INSERT ... SELECT / nhiều VALUES trong 1 câu lệnh.
+
+CREATE SEQUENCE IF NOT EXISTS users_seq INCREMENT BY 50;
+SELECT setval('users_seq', COALESCE((SELECT MAX(id) FROM users), 0) + 1, false);
+ALTER TABLE users ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE users ALTER COLUMN id SET DEFAULT nextval('users_seq');
+ALTER SEQUENCE users_seq OWNED BY users.id;
+
+CREATE SEQUENCE IF NOT EXISTS classes_seq INCREMENT BY 50;
+SELECT setval('classes_seq', COALESCE((SELECT MAX(id) FROM classes), 0) + 1, false);
+ALTER TABLE classes ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE classes ALTER COLUMN id SET DEFAULT nextval('classes_seq');
+ALTER SEQUENCE classes_seq OWNED BY classes.id;
+
+CREATE SEQUENCE IF NOT EXISTS class_members_seq INCREMENT BY 50;
+SELECT setval('class_members_seq', COALESCE((SELECT MAX(id) FROM class_members), 0) + 1, false);
+ALTER TABLE class_members ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE class_members ALTER COLUMN id SET DEFAULT nextval('class_members_seq');
+ALTER SEQUENCE class_members_seq OWNED BY class_members.id;
+
+CREATE SEQUENCE IF NOT EXISTS sessions_seq INCREMENT BY 50;
+SELECT setval('sessions_seq', COALESCE((SELECT MAX(id) FROM sessions), 0) + 1, false);
+ALTER TABLE sessions ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE sessions ALTER COLUMN id SET DEFAULT nextval('sessions_seq');
+ALTER SEQUENCE sessions_seq OWNED BY sessions.id;
@@ -0,0 +1,103 @@
+package com.service;
+
+import com.api.dto.AttendanceDtos;
+import com.config.AppProperties;
+import com.domain.entity.Attendance;
+import com.domain.enums.AttendanceStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.repo.AttendanceInsertRepository;
+import com.repo.AttendanceRepository;
+import com.repo.ClassMemberRepository;
+import com.repo.SessionRepository;
+import com.security.QrTokenSigner;
+import com.security.UserPrincipal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Check-in khi giảng viên mở session không gửi GPS: distanceMeters = null.
+ * Trước đây Map.of(..., "distanceMeters", null) ném NullPointerException -> 500 cho 1 check-in hợp lệ.
+ */
+class AttendanceServiceCheckInTest {
+
+  private static final long SESSION_ID = 7L;
+  private static final long CLASS_ID = 3L;
+  private static final long STUDENT_ID = 11L;
+  private static final String QR_TOKEN = "static-token";
+
+  private final OpenSessionRegistry openSessions = mock(OpenSessionRegistry.class);
+  private final ClassRosterIndex rosterIndex = mock(ClassRosterIndex.class);
+  private final AttendanceWriteBehind writeBehind = mock(AttendanceWriteBehind.class);
+  private final AttendanceInsertRepository insertRepo = mock(AttendanceInsertRepository.class);
+  private final QrTokenSigner qrSigner = mock(QrTokenSigner.class);
+
+  private AttendanceService service;
+
+  @BeforeEach
+  void setUp() {
+    AppProperties props = new AppProperties();
+    props.getAttendance().setOnTimeMinutes(10);
+
+    service = new AttendanceService(
+        mock(SessionRepository.class),
+        mock(ClassMemberRepository.class),
+        mock(AttendanceRepository.class),
+        insertRepo,
+        openSessions,
+        rosterIndex,
+        writeBehind,
+        qrSigner,
+        mock(UploadService.class),
+        mock(SessionLiveFeed.class),
+        mock(SessionLiveCounters.class),
+        mock(ResourceVersions.class),
+        props
+    );
+
+    SecurityContextHolder.getContext().setAuthentication(
+        new UsernamePasswordAuthenticationToken(new UserPrincipal(STUDENT_ID, "sv@example.com", "STUDENT"), null));
+  }
+
+  @AfterEach
+  void clearContext() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  void checkInWithoutTeacherGpsReturnsNullDistance() throws Exception {
+    // Session mở không có GPS giảng viên -> không có geofence
+    when(openSessions.get(SESSION_ID)).thenReturn(new OpenSessionRegistry.OpenSession(
+        SESSION_ID, CLASS_ID, QR_TOKEN, null, LocalDateTime.now(), null));
+    when(openSessions.getDefaultRadiusMeters()).thenReturn(50.0);
+    when(qrSigner.isRotating()).thenReturn(false);
+    when(rosterIndex.isMember(CLASS_ID, STUDENT_ID)).thenReturn(true);
+    when(writeBehind.enqueue(any(Attendance.class), any())).thenReturn(false);
+    when(insertRepo.insertIfAbsent(any(Attendance.class))).thenReturn(42L);
+
+    AttendanceDtos.CheckInResponse resp = service.checkIn(new AttendanceDtos.CheckInRequest(
+        new AttendanceDtos.QrPayload(SESSION_ID, QR_TOKEN), 10.762622, 106.660172, "/uploads/a.jpg"));
+
+    assertNull(resp.distanceMeters());
+    assertEquals(50L, resp.maxDistanceMeters());
+    assertEquals(42L, resp.attendance().id());
+    assertEquals(AttendanceStatus.ON_TIME, resp.attendance().status());
+
+    String json = new ObjectMapper().registerModule(new JavaTimeModule())
+        .writerFor(AttendanceDtos.CheckInResponse.class)
+        .writeValueAsString(resp);
+    assertTrue(json.contains("\"distanceMeters\":null"), json);
+  }
+}
@@ -0,0 +1,69 @@
+import api from "./axiosClient";
+
+// EventSource không gửi được header Authorization -> đọc text/event-stream bằng fetch
+// để JWT vẫn nằm trong header (không lộ qua query string / log proxy).
+// onEvent(name, data) được gọi cho mỗi sự kiện; tự kết nối lại sau khi mất kết nối.
+export function subscribeSse(path, onEvent, { retryMs = 3000 } = {}) {
+  const controller = new AbortController();
+  let stopped = false;
+
+  const dispatch = (block) => {
+    let name = "message";
+    const data = [];
+    for (const line of block.split("\n")) {
+      if (line.startsWith(":")) continue; // heartbeat
+      if (line.startsWith("event:")) name = line.slice(6).trim();
+      else if (line.startsWith("data:")) data.push(line.slice(5).replace(/^ /, ""));
+    }
+    if (data.length === 0) return;
+    let parsed = data.join("\n");
+    try {
+      parsed = JSON.parse(parsed);
+    } catch {
+      // giữ dạng text
+    }
+    onEvent(name, parsed);
+  };
+
+  const connect = async () => {
+    while (!stopped) {
+      try {
+        const token = localStorage.getItem("qr_token");
+        const res = await fetch(`${api.defaults.baseURL}${path}`, {
+          headers: {
+            Accept: "text/event-stream",
+            ...(token ? { Authorization: `Bearer ${token}` } : {}),
+          },
+          signal: controller.signal,
+        });
+        // 403/404: không có quyền hoặc session không còn -> không thử lại
+        if (res.status === 403 || res.status === 404) return;
+        if (!res.ok || !res.body) throw new Error(`SSE HTTP ${res.status}`);
+
+        const reader = res.body.pipeThrough(new TextDecoderStream()).getReader();
+        let buffer = "";
+        for (;;) {
+          const { value, done } = await reader.read();
+          if (done) break;
+          buffer += value.replace(/\r\n?/g, "\n");
+          let idx;
+          while ((idx = buffer.indexOf("\n\n")) >= 0) {
+            dispatch(buffer.slice(0, idx));
+            buffer = buffer.slice(idx + 2);
+          }
+        }
+      } catch (err) {
+        if (stopped) return;
+        console.warn("Live feed disconnected", err);
+      }
+      if (stopped) return;
+      await new Promise((r) => setTimeout(r, retryMs + Math.random() * 1000));
+    }
+  };
+
+  connect();
+  return () => {
+    stopped = true;
+    controller.abort();
+  };
+}
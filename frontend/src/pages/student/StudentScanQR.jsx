@@ -13,14 +13,30 @@ function dataUrlToFile(dataUrl, filename = `selfie_${Date.now()}.jpg`) {
   return new File([arr], filename, { type: mime });
 }
 
-async function uploadSelfie(selfieDataUrl) {
-  const file = dataUrlToFile(selfieDataUrl);
+// Gửi QR + GPS + ảnh selfie trong 1 request multipart: server kiểm tra QR/vị trí trước,
+// chỉ lưu ảnh khi điểm danh hợp lệ. FormData dựng 1 lần, gửi lại được khi bị 429.
+function buildCheckInForm(payload, gpsLat, gpsLng, selfieDataUrl) {
   const form = new FormData();
-  form.append('file', file);
-  const res = await api.post('/api/upload/photo', form, {
-    headers: { 'Content-Type': 'multipart/form-data' },
-  });
-  return res.data?.photoUrl;
+  form.append(
+    'payload',
+    new Blob([JSON.stringify({ payload, gpsLat, gpsLng })], { type: 'application/json' })
+  );
+  form.append('file', dataUrlToFile(selfieDataUrl));
+  return form;
+}
+
+// Server trả 429 + Retry-After khi đang quá tải (cả lớp quét cùng lúc) -> chờ rồi gửi lại.
+async function postWithRetry(url, body, config, maxAttempts = 4) {
+  for (let attempt = 1; ; attempt++) {
+    try {
+      return await api.post(url, body, config);
+    } catch (err) {
+      if (err.response?.status !== 429 || attempt >= maxAttempts) throw err;
+      const retryAfter = Number(err.response.headers?.['retry-after']) || 2;
+      const jitterMs = Math.random() * 1000;
+      await new Promise((r) => setTimeout(r, retryAfter * 1000 + jitterMs));
+    }
+  }
 }
 
 function resolveMediaUrl(url) {
@@ -174,24 +190,19 @@ export default function StudentScanQR() {
             return;
           }
 
-          // ✅ Upload ảnh trước, chỉ lưu URL (ngắn) vào DB thay vì base64
-          const photoUrl = await uploadSelfie(selfieDataUrl);
-          if (!photoUrl) {
-            setStatus('error');
-            setMessage('Upload ảnh thất bại. Hãy thử chụp lại và gửi lại.');
-            return;
-          }
-
-          const body = {
+          const form = buildCheckInForm(
             payload,
-            gpsLat: pos.coords.latitude,
-            gpsLng: pos.coords.longitude,
-            photoUrl, // "/uploads/xxx.jpg" (hoặc URL)
-          };
+            pos.coords.latitude,
+            pos.coords.longitude,
+            selfieDataUrl
+          );
 
-          const res = await api.post('/api/attendance/check-in', body);
+          const res = await postWithRetry('/api/attendance/check-in', form, {
+            headers: { 'Content-Type': 'multipart/form-data' },
+          });
           setStatus('success');
-          setMessage('Điểm danh thành công!');
+          // Write-behind: id = null -> bản ghi đã được tiếp nhận, đang chờ ghi
+          setMessage(res.data?.attendance?.id == null ? 'Đã tiếp nhận điểm danh!' : 'Điểm danh thành công!');
           setAttendance(res.data.attendance || null);
           setDistanceInfo({
             distanceMeters: res.data?.distanceMeters ?? null,
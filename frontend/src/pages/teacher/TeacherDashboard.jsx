@@ -67,11 +67,19 @@ export default function TeacherDashboard() {
   };
   const handleExportClass = async (classId) => {
     try {
-      setMessage('');
-      // tải file Excel tổng hợp chuyên cần theo LỚP
-      const res = await api.get(`/api/teacher/classes/${classId}/attendance/export`, {
-        responseType: 'blob',
-      });
+      setMessage('Đang tạo file báo cáo lớp...');
+      // Export chạy nền: tạo job -> chờ xong -> tải file (dữ liệu chưa đổi thì server trả luôn file đã có)
+      let { data: job } = await api.post(`/api/teacher/classes/${classId}/attendance/export-jobs`);
+      while (job.status === 'QUEUED' || job.status === 'RUNNING') {
+        await new Promise((r) => setTimeout(r, 1000));
+        ({ data: job } = await api.get(`/api/teacher/export-jobs/${job.jobId}`));
+      }
+      if (job.status !== 'DONE') {
+        setMessage(job.error || 'Không thể xuất báo cáo lớp. Vui lòng thử lại.');
+        return;
+      }
+
+      const res = await api.get(job.downloadUrl, { responseType: 'blob' });
 
       const blob = new Blob([res.data], {
         type: 'application/vnd.openxmlformats-officedocument.spreadsheetml.sheet',
@@ -85,6 +93,7 @@ export default function TeacherDashboard() {
       a.click();
       a.remove();
       window.URL.revokeObjectURL(url);
+      setMessage('');
     } catch (e) {
       setMessage(
         e?.response?.data?.message || 'Không thể xuất báo cáo lớp. Vui lòng thử lại.'
@@ -1,6 +1,7 @@
-import React, { useEffect, useMemo, useState } from 'react';
+import React, { useEffect, useMemo, useRef, useState } from 'react';
 import { useParams, useNavigate } from 'react-router-dom';
 import api from '../../api/axiosClient';
+import { subscribeSse } from '../../api/sseClient';
 import { QRCodeCanvas } from 'qrcode.react';
 
 const GEO_OPTIONS = { enableHighAccuracy: true, timeout: 15000, maximumAge: 0 };
@@ -24,6 +25,7 @@ export default function TeacherSessionDetail() {
   const [session, setSession] = useState(null);
   const [members, setMembers] = useState([]);
   const [attendance, setAttendance] = useState([]);
+  const [counts, setCounts] = useState(null); // {rosterSize, onTime, late, notYet}
 
   const [qrPayload, setQrPayload] = useState(null);
   const [showQrModal, setShowQrModal] = useState(false);
@@ -59,15 +61,44 @@ export default function TeacherSessionDetail() {
     }
   };
 
-  const loadAttendance = async () => {
+  // Endpoint nhỏ, chi phí không phụ thuộc sĩ số lớp
+  const loadCounts = async () => {
     try {
-      const res = await api.get(`/api/teacher/sessions/${sessionId}/attendance`);
-      setAttendance(res.data);
+      const res = await api.get(`/api/teacher/sessions/${sessionId}/counts`);
+      setCounts(res.data);
     } catch {
-      setAttendance([]);
+      setCounts(null);
     }
   };
 
+  // Đồng bộ danh sách theo cursor: lần đầu cursor rỗng (lấy hết), các lần sau chỉ lấy bản ghi mới.
+  // Gộp theo studentId (server có thể trả lại vài bản ghi gần nhất ở lần kế tiếp).
+  const cursorRef = useRef('');
+  const loadAttendance = async () => {
+    try {
+      let hasMore = true;
+      while (hasMore) {
+        const sent = cursorRef.current;
+        const res = await api.get(`/api/teacher/sessions/${sessionId}/attendance`, {
+          params: { cursor: sent },
+        });
+        const rows = res.data?.rows || [];
+        cursorRef.current = res.data?.nextCursor ?? sent;
+        // Cursor không tiến (bản ghi mới chưa "settle") -> dừng, lần poll sau đọc tiếp
+        hasMore = !!res.data?.hasMore && rows.length > 0 && cursorRef.current !== sent;
+        if (rows.length === 0) continue;
+        setAttendance((prev) => {
+          const byStudent = new Map(prev.map((a) => [Number(a.studentId), a]));
+          rows.forEach((r) => byStudent.set(Number(r.studentId), r));
+          return [...byStudent.values()].sort(
+            (x, y) => new Date(x.checkInTime || 0) - new Date(y.checkInTime || 0)
+          );
+        });
+      }
+    } catch {
+      // giữ danh sách hiện có, lần đồng bộ sau sẽ thử lại từ cursor cũ
+    }
+  };
 
   const exportAttendanceXlsx = async () => {
     try {
@@ -93,8 +124,11 @@ export default function TeacherSessionDetail() {
 
   useEffect(() => {
     if (!sessionId) return;
+    cursorRef.current = '';
+    setAttendance([]);
     loadSession();
     loadAttendance();
+    loadCounts();
     // eslint-disable-next-line react-hooks/exhaustive-deps
   }, [sessionId]);
 
@@ -148,6 +182,7 @@ export default function TeacherSessionDetail() {
     const res = await api.put(`/api/teacher/sessions/${sessionId}/close`);
     setSession(res.data);
     setQrPayload(null);
+    loadCounts(); // số liệu đã đối chiếu với DB
   };
 
   const deleteSession = async () => {
@@ -166,17 +201,71 @@ export default function TeacherSessionDetail() {
         note: '',
       });
       await loadAttendance();
+      loadCounts();
     } catch (err) {
       alert(err.response?.data?.message || 'Không điểm danh thủ công được.');
     }
   };
 
-  // build qrPayload khi session OPEN và có qrToken
+  // Lấy mã QR hiện tại khi session OPEN.
+  // QR xoay vòng: backend trả refreshInMs -> hẹn giờ lấy mã của slot kế tiếp.
   useEffect(() => {
-    if (session && session.status === 'OPEN' && session.qrToken) {
-      setQrPayload({ sessionId: session.id, qrToken: session.qrToken });
-    }
-  }, [session]);
+    if (!session || session.status !== 'OPEN') return undefined;
+
+    let cancelled = false;
+    let timer = null;
+
+    const refreshQr = async () => {
+      try {
+        const res = await api.get(`/api/teacher/sessions/${sessionId}/qr`);
+        if (cancelled) return;
+        setQrPayload(res.data.qrPayload);
+        if (res.data.refreshInMs != null) {
+          timer = setTimeout(refreshQr, Math.max(res.data.refreshInMs, 500));
+        }
+      } catch (err) {
+        console.error(err);
+        if (!cancelled && session.qrToken) {
+          setQrPayload({ sessionId: session.id, qrToken: session.qrToken });
+        }
+      }
+    };
+
+    refreshQr();
+    return () => {
+      cancelled = true;
+      if (timer) clearTimeout(timer);
+    };
+    // eslint-disable-next-line react-hooks/exhaustive-deps
+  }, [session?.id, session?.status, session?.qrToken]);
+
+  // Live feed (SSE) khi session OPEN: mỗi check-in mới được thêm vào bảng, không tải lại cả danh sách.
+  // "ready" (kết nối/kết nối lại) -> tải danh sách + số liệu 1 lần để không sót bản ghi lúc mất kết nối.
+  // Giữa 2 lần "ready", số liệu được cộng tại chỗ từ status của sự kiện (server chỉ đẩy bản ghi mới ghi).
+  useEffect(() => {
+    if (!session || session.status !== 'OPEN') return undefined;
+
+    const unsubscribe = subscribeSse(`/api/teacher/sessions/${sessionId}/attendance/stream`, (name, data) => {
+      if (name === 'ready') {
+        loadAttendance();
+        loadCounts();
+        return;
+      }
+      if (name !== 'attendance' || !data) return;
+      setCounts((prev) => {
+        const key = { ON_TIME: 'onTime', LATE: 'late', ABSENT: 'absent' }[data.status];
+        if (!prev || !key) return prev;
+        return { ...prev, [key]: (prev[key] ?? 0) + 1, notYet: Math.max((prev.notYet ?? 0) - 1, 0) };
+      });
+      setAttendance((prev) => {
+        if (prev.some((a) => Number(a.studentId) === Number(data.studentId))) return prev;
+        const m = members.find((x) => Number(x.studentId) === Number(data.studentId));
+        return [...prev, { ...data, fullName: m?.fullName ?? `#${data.studentId}`, email: m?.email ?? '' }];
+      });
+    });
+    return unsubscribe;
+    // eslint-disable-next-line react-hooks/exhaustive-deps
+  }, [session?.id, session?.status, members]);
 
   if (!session) return <p>Đang tải...</p>;
 
@@ -294,6 +383,11 @@ export default function TeacherSessionDetail() {
       <div className="card">
         <div style={{ display: 'flex', alignItems: 'center', justifyContent: 'space-between', gap: 12, flexWrap: 'wrap' }}>
         <h3 style={{ margin: 0 }}>DANH SÁCH ĐIỂM DANH</h3>
+        {counts && (
+          <span className="text-muted">
+            Sĩ số {counts.rosterSize} · Đúng giờ {counts.onTime} · Muộn {counts.late} · Chưa điểm danh {counts.notYet}
+          </span>
+        )}
         <button
           className="btn btnPrimary btnSm"
           onClick={exportAttendanceXlsx}
@@ -316,7 +410,7 @@ export default function TeacherSessionDetail() {
             </thead>
             <tbody>
               {attendance.map((a) => (
-                <tr key={a.id}>
+                <tr key={a.id ?? `s${a.studentId}`}>
                   <td>
                     {a.fullName} ({a.email})
                   </td>